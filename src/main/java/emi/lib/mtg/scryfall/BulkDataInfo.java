@@ -0,0 +1,83 @@
+package emi.lib.mtg.scryfall;
+
+import emi.lib.mtg.scryfall.api.BulkDataList;
+import emi.lib.mtg.scryfall.api.ScryfallApi;
+import emi.lib.mtg.scryfall.serde.ScryfallSerde;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Records which Scryfall bulk data file our local data file was built from, so update() can tell whether Scryfall has
+ * published anything new without re-downloading the whole thing. Also used by BulkStaging to describe a partially
+ * downloaded bulk file.
+ */
+class BulkDataInfo {
+	public Instant updatedAt;
+	public long size;
+	public String etag;
+	public String lastModified;
+	public ScryfallSerde.Implementation serde;
+	public String contentEncoding;
+	public long contentLength = -1;
+
+	BulkDataInfo() {
+	}
+
+	BulkDataInfo(BulkDataList.Entry entry, ScryfallApi.Validators validators, ScryfallSerde.Implementation serde) {
+		this.updatedAt = entry.updatedAt;
+		this.size = entry.size;
+		this.etag = validators.etag;
+		this.lastModified = validators.lastModified;
+		this.serde = serde;
+	}
+
+	BulkDataInfo(BulkDataList.Entry entry, ScryfallApi.Transfer transfer) {
+		this(entry, transfer.validators, null);
+		this.contentEncoding = transfer.encoding;
+		this.contentLength = transfer.length;
+	}
+
+	/**
+	 * @param entry The bulk data entry Scryfall is currently advertising.
+	 * @return True if this info describes the same revision of the same bulk data file.
+	 */
+	boolean sameBulk(BulkDataList.Entry entry) {
+		return this.size == entry.size && Objects.equals(this.updatedAt, entry.updatedAt);
+	}
+
+	/**
+	 * @param entry The bulk data entry Scryfall is currently advertising.
+	 * @param serde The serializer the local data file is expected to be written with.
+	 * @return True if the local data file was built from exactly this bulk data entry with the given serializer.
+	 */
+	boolean matches(BulkDataList.Entry entry, ScryfallSerde.Implementation serde) {
+		return this.serde == serde && sameBulk(entry);
+	}
+
+	ScryfallApi.Validators validators() {
+		return new ScryfallApi.Validators(etag, lastModified);
+	}
+
+	static BulkDataInfo load(Path file) {
+		if (!Files.exists(file)) return null;
+
+		try (Reader reader = Files.newBufferedReader(file)) {
+			return ScryfallApi.GSON.fromJson(reader, BulkDataInfo.class);
+		} catch (IOException | RuntimeException e) {
+			new IOException(String.format("Unable to read Scryfall bulk data info %s. Assuming a full update is required.", file.toAbsolutePath()), e).printStackTrace();
+			return null;
+		}
+	}
+
+	void save(Path file) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file)) {
+			ScryfallApi.GSON.toJson(this, BulkDataInfo.class, writer);
+		}
+	}
+}
@@ -0,0 +1,466 @@
+package emi.lib.mtg.scryfall;
+
+import emi.lib.mtg.scryfall.api.BulkDataList;
+import emi.lib.mtg.scryfall.api.ScryfallApi;
+import emi.lib.mtg.scryfall.util.ReportingWrapper;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Downloads a Scryfall bulk data file into a staging file under the data directory. Dropped connections are resumed
+ * with HTTP Range requests, both within a single download and across restarts, and the finished file is checked
+ * against the size the server promised before it's reported complete.
+ *
+ * The download can run in the background via start(), in which case tail() can read the file as it arrives. The tail
+ * only reaches end-of-file once the download has finished and the decoded file has turned out to be the size Scryfall
+ * advertised, so nothing parsed from it should be trusted until then. A file which doesn't decode to that size is
+ * thrown away and downloaded again, once.
+ */
+class BulkStaging {
+	private static final int MAX_ATTEMPTS = 5;
+	private static final long RETRY_PAUSE = 2000;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path file, infoFile;
+	private volatile BulkDataInfo info;
+	private ScryfallApi api;
+	private BulkDataList.Entry entry;
+	private DoubleConsumer progress;
+
+	// Guarded by this.
+	private long written;
+	private int generation;
+	private boolean started, done, result, retried;
+	private IOException failure;
+	private volatile boolean cancelled;
+
+	BulkStaging(Path dataDir) {
+		this.file = dataDir.resolve("scryfall-bulk.staging");
+		this.infoFile = dataDir.resolve("scryfall-bulk.staging.json");
+		this.info = null;
+		this.written = 0;
+		this.generation = 0;
+		this.started = false;
+		this.done = false;
+		this.result = false;
+		this.retried = false;
+		this.failure = null;
+		this.cancelled = false;
+	}
+
+	/**
+	 * Runs download() on a background thread. Use awaitStarted() to find out whether there's anything to read.
+	 */
+	void start(ScryfallApi api, BulkDataList.Entry entry, ScryfallApi.Validators conditional, DoubleConsumer progress) {
+		this.api = api;
+		this.entry = entry;
+		this.progress = progress;
+
+		Thread thread = new Thread(() -> {
+			boolean result = false;
+			IOException failure = null;
+
+			try {
+				result = download(api, entry, conditional, progress);
+			} catch (IOException ioe) {
+				failure = ioe;
+			} catch (RuntimeException re) {
+				failure = new IOException(re);
+			}
+
+			synchronized (BulkStaging.this) {
+				this.result = result;
+				this.failure = failure;
+				this.done = true;
+				BulkStaging.this.notifyAll();
+			}
+		}, "Scryfall Bulk Download");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits until the server has started sending the bulk file, or the download has otherwise finished.
+	 *
+	 * @return True if there's a file to read, or false if the server reported it unchanged.
+	 * @throws IOException If the download failed before any of the file arrived.
+	 */
+	synchronized boolean awaitStarted() throws IOException {
+		try {
+			while (!started && !done) wait();
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException("Interrupted while waiting for bulk data download to start");
+		}
+
+		if (started) return true;
+		if (failure != null) throw failure;
+		return result;
+	}
+
+	/**
+	 * Waits until the download has finished and the staged file has been checked against the size the server promised.
+	 *
+	 * @throws IOException If the download failed.
+	 */
+	synchronized void awaitFinished() throws IOException {
+		try {
+			while (!done) wait();
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException("Interrupted while waiting for bulk data download to finish");
+		}
+
+		if (failure != null) throw failure;
+	}
+
+	/**
+	 * Asks a background download to stop at the next opportunity. The staged file is left in place to be resumed.
+	 */
+	void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return The number of bytes of the staged file downloaded so far.
+	 */
+	synchronized long written() {
+		return written;
+	}
+
+	/**
+	 * @return A counter which changes whenever the staged file is thrown away and started over.
+	 */
+	synchronized int generation() {
+		return generation;
+	}
+
+	/**
+	 * @return The expected size of the staged file, or -1 if the server hasn't said.
+	 */
+	long expectedSize() {
+		BulkDataInfo info = this.info;
+		return info == null ? -1 : info.contentLength;
+	}
+
+	/**
+	 * Marks the staged file as readable from the given offset on. Only called once info describes the transfer and the
+	 * file exists, since tail() opens and decodes it as soon as awaitStarted() returns.
+	 */
+	private synchronized void restart(long offset) {
+		reset(offset);
+		started = true;
+		notifyAll();
+	}
+
+	private synchronized void reset(long offset) {
+		if (offset == 0 && written > 0) ++generation;
+		written = offset;
+		notifyAll();
+	}
+
+	private synchronized void advance(long bytes) {
+		written += bytes;
+		notifyAll();
+	}
+
+	/**
+	 * Downloads the given bulk data file into the staging file, picking up where any previous attempt left off.
+	 *
+	 * @param api The API instance to download with.
+	 * @param entry The bulk data file to download.
+	 * @param conditional Validators of the bulk file our data was last built from, or null. Only used when starting a
+	 *                    download from scratch.
+	 * @param progress Receives the fraction of the file which has been downloaded.
+	 * @return True if the file was staged, or false if the server reported it unchanged since the conditional
+	 * validators were obtained.
+	 * @throws IOException If the download failed repeatedly, or the downloaded file is the wrong size.
+	 */
+	boolean download(ScryfallApi api, BulkDataList.Entry entry, ScryfallApi.Validators conditional, DoubleConsumer progress) throws IOException {
+		info = BulkDataInfo.load(infoFile);
+		if (info == null || !info.sameBulk(entry) || !Files.exists(file)) {
+			discard();
+		} else if (info.contentLength >= 0 && Files.size(file) == info.contentLength) {
+			System.out.printf("Scryfall: Bulk data file was already downloaded to %s.%n", file);
+			restart(Files.size(file));
+			return true;
+		}
+
+		IOException failure = null;
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+			if (attempt > 0) {
+				System.err.printf("Scryfall: Bulk data download interrupted (%s); resuming in %d ms...%n", failure.getMessage(), RETRY_PAUSE * attempt);
+
+				try {
+					Thread.sleep(RETRY_PAUSE * attempt);
+				} catch (InterruptedException ie) {
+					throw new InterruptedIOException("Interrupted while waiting to resume bulk data download");
+				}
+			}
+
+			final long offset = info != null ? Files.size(file) : 0;
+			ScryfallApi.Transfer transfer = new ScryfallApi.Transfer(offset, offset > 0 ? info.validators() : conditional);
+
+			InputStream input;
+			try {
+				input = ScryfallApi.await(api.getURL(entry.downloadUri.toURL(), "application/json", null, transfer, false));
+			} catch (ScryfallApi.HttpException he) {
+				// 416 means the server didn't like our range; start over. Anything else isn't going to fix itself.
+				if (he.errorCode != 416) throw he;
+				discard();
+				failure = he;
+				continue;
+			} catch (InterruptedIOException iioe) {
+				throw iioe;
+			} catch (IOException ioe) {
+				failure = ioe;
+				continue;
+			}
+
+			if (input == null) {
+				// Not modified. start() reports this as done without ever having started, so awaitStarted() returns false.
+				return false;
+			}
+
+			final boolean append = transfer.partial && info != null && Objects.equals(info.contentEncoding, transfer.encoding);
+			if (transfer.partial && !append) {
+				// Resumed a differently-encoded transfer. The bytes won't line up; start over.
+				input.close();
+				discard();
+				failure = new IOException("Server changed the bulk data encoding mid-download");
+				continue;
+			}
+
+			info = new BulkDataInfo(entry, transfer);
+			info.save(infoFile);
+
+			final long start = append ? offset : 0;
+			final long total = info.contentLength >= 0 ? info.contentLength : entry.size;
+			try (InputStream in = input;
+				 OutputStream out = append ?
+						 Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND) :
+						 Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				restart(start);
+
+				byte[] buffer = new byte[BUFFER_SIZE];
+				long written = start;
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					if (cancelled) throw new InterruptedIOException("Bulk data download cancelled");
+					out.write(buffer, 0, read);
+					advance(read);
+					written += read;
+					if (progress != null) progress.accept(Math.min(1.0, (double) written / (double) total));
+				}
+			} catch (InterruptedIOException iioe) {
+				throw iioe;
+			} catch (IOException ioe) {
+				failure = ioe;
+				continue;
+			}
+
+			if (info.contentLength >= 0 && Files.size(file) < info.contentLength) {
+				failure = new IOException(String.format("Connection closed after %d of %d bytes", Files.size(file), info.contentLength));
+				continue;
+			}
+
+			if (info.contentLength >= 0 && Files.size(file) != info.contentLength) {
+				long transferred = Files.size(file);
+				discard();
+				throw new IOException(String.format("Downloaded bulk data is %d bytes, but the server promised %d", transferred, info.contentLength));
+			}
+
+			return true;
+		}
+
+		throw new IOException(String.format("Unable to download Scryfall bulk data after %d attempts", MAX_ATTEMPTS), failure);
+	}
+
+	/**
+	 * @return The validators of the staged file, as reported by the server.
+	 */
+	ScryfallApi.Validators validators() {
+		return info.validators();
+	}
+
+	/**
+	 * Opens the staged file for reading as it's being downloaded, decoding it if necessary. Reads block until more of
+	 * the file arrives, and end-of-file is only reported once the download has finished and the decoded file has turned
+	 * out to be the size Scryfall advertised. If it isn't, or it can't be decoded, the file is thrown away and
+	 * downloaded again, and the read fails with the generation changed. Must not be called until awaitStarted() returns
+	 * true.
+	 *
+	 * @param reporter Receives the number of bytes of the staged file read so far. May be null.
+	 * @return A stream over the decoded bulk data file.
+	 * @throws IOException If the file can't be opened, or was transferred with an unsupported encoding.
+	 */
+	InputStream tail(LongConsumer reporter) throws IOException {
+		InputStream in = new Tail();
+		if (reporter != null) in = new ReportingWrapper(in, reporter);
+		return new Decoded(decode(new BufferedInputStream(in, BUFFER_SIZE)), entry.size);
+	}
+
+	/**
+	 * Counts the bytes decoded from a tail, and checks them against the size Scryfall advertised at end-of-file.
+	 */
+	private class Decoded extends FilterInputStream {
+		private final long expected;
+		private long decoded;
+
+		Decoded(InputStream in, long expected) {
+			super(in);
+			this.expected = expected;
+			this.decoded = 0;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read;
+			try {
+				read = super.read(b, off, len);
+			} catch (EOFException | ZipException e) {
+				throw reject(String.format("Downloaded bulk data couldn't be decoded (%s)", e.getMessage()));
+			}
+
+			if (read > 0) {
+				decoded += read;
+			} else if (read < 0 && decoded != expected) {
+				throw reject(String.format("Downloaded bulk data is %d bytes, but Scryfall says it should be %d", decoded, expected));
+			}
+
+			return read;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			return read(new byte[(int) Math.min(n, BUFFER_SIZE)], 0, (int) Math.min(n, BUFFER_SIZE));
+		}
+	}
+
+	/**
+	 * Throws away a staged file which didn't decode to the size Scryfall advertised. The first time, it's downloaded
+	 * again from scratch in the background; anyone tailing it sees that as a new generation.
+	 *
+	 * @param message Describes what was wrong with the file.
+	 * @return An exception describing the problem, for the reader to throw.
+	 */
+	private IOException reject(String message) throws IOException {
+		synchronized (this) {
+			cancelled = true;
+			try {
+				while (!done) wait();
+			} catch (InterruptedException ie) {
+				throw new InterruptedIOException("Interrupted while waiting for bulk data download to stop");
+			} finally {
+				cancelled = false;
+			}
+		}
+
+		discard();
+
+		synchronized (this) {
+			if (retried) return new IOException(message);
+			retried = true;
+			started = false;
+			done = false;
+			failure = null;
+		}
+
+		System.err.printf("Scryfall: %s; downloading it again.%n", message);
+		start(api, entry, null, progress);
+		return new IOException(message);
+	}
+
+	private class Tail extends InputStream {
+		private final FileChannel channel;
+		private final int generation;
+		private long position;
+
+		Tail() throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.generation = generation();
+			this.position = 0;
+		}
+
+		private long await() throws IOException {
+			synchronized (BulkStaging.this) {
+				try {
+					while (true) {
+						if (failure != null) throw new IOException("Bulk data download failed", failure);
+						if (generation != BulkStaging.this.generation) throw new IOException("Bulk data download restarted from scratch while it was being read");
+						if (position < written) return written - position;
+						if (done) return -1;
+						BulkStaging.this.wait();
+					}
+				} catch (InterruptedException ie) {
+					throw new InterruptedIOException("Interrupted while waiting for more bulk data");
+				}
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+
+			long available = await();
+			if (available < 0) return -1;
+
+			int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), position);
+			if (read > 0) position += read;
+			return read;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	private InputStream decode(InputStream in) throws IOException {
+		if (info.contentEncoding == null || "identity".equals(info.contentEncoding)) {
+			return in;
+		} else if ("gzip".equals(info.contentEncoding)) {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		} else {
+			in.close();
+			throw new IOException("Unsupported bulk data content encoding " + info.contentEncoding);
+		}
+	}
+
+	/**
+	 * Deletes the staged file and its description. Anyone tailing the old file is told it restarted; nobody is told the
+	 * new one has started until the server has answered and the file has been created again.
+	 */
+	void discard() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(infoFile);
+		info = null;
+		reset(0);
+	}
+}
@@ -0,0 +1,411 @@
+package emi.lib.mtg.scryfall;
+
+import emi.lib.mtg.scryfall.api.ScryfallApi;
+import emi.lib.mtg.scryfall.serde.ScryfallSerde;
+import emi.lib.mtg.scryfall.util.UuidMap;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Tracks incremental updates to the Scryfall data file. Rather than rewriting the whole data file whenever Scryfall
+ * publishes new bulk data, update() can write only the added and changed cards to a delta segment, and record the
+ * removed ones in a manifest. Readers take the base file, then each segment in order, skipping any card a later
+ * segment replaced or removed. Once enough segments pile up, they're compacted back into the base file.
+ *
+ * A content hash of every card in the merged data is kept in an index file, so update() can tell which cards changed.
+ */
+class DeltaStore {
+	private static final int INDEX_MAGIC = 0x53464458;
+	private static final int MAX_SEGMENTS = 8;
+	private static final double MAX_DELTA_FRACTION = 0.1;
+
+	static class Segment {
+		public String file;
+		public List<UUID> upserted = new ArrayList<>();
+		public List<UUID> removed = new ArrayList<>();
+	}
+
+	static class Manifest {
+		public ScryfallSerde.Implementation serde;
+		public long revision;
+		public List<Segment> segments = new ArrayList<>();
+	}
+
+	private final Path dataDir;
+	private final Manifest manifest;
+	private Map<UUID, Long> hashes;
+
+	private DeltaStore(Path dataDir, Manifest manifest, Map<UUID, Long> hashes) {
+		this.dataDir = dataDir;
+		this.manifest = manifest;
+		this.hashes = hashes;
+	}
+
+	private static Path manifestFile(Path dataDir) {
+		return dataDir.resolve("scryfall-delta.json");
+	}
+
+	private static Path indexFile(Path dataDir) {
+		return dataDir.resolve("scryfall-delta.index");
+	}
+
+	/**
+	 * Loads the delta manifest for the data file in dataDir.
+	 *
+	 * @param dataDir The directory containing the data file.
+	 * @param serde The serializer the base data file was written with.
+	 * @return The delta store, or null if there isn't one, or it doesn't match the base data file.
+	 */
+	static DeltaStore load(Path dataDir, ScryfallSerde.Implementation serde) {
+		Manifest manifest = readManifest(dataDir);
+		if (manifest == null || manifest.serde != serde) return null;
+
+		for (Segment segment : manifest.segments) {
+			if (!Files.exists(dataDir.resolve(segment.file))) {
+				System.err.printf("Scryfall: Delta segment %s is missing; ignoring delta updates.%n", segment.file);
+				return null;
+			}
+		}
+
+		return new DeltaStore(dataDir, manifest, null);
+	}
+
+	private static Manifest readManifest(Path dataDir) {
+		Path file = manifestFile(dataDir);
+		if (!Files.exists(file)) return null;
+
+		try (Reader reader = Files.newBufferedReader(file)) {
+			return ScryfallApi.GSON.fromJson(reader, Manifest.class);
+		} catch (IOException | RuntimeException e) {
+			new IOException(String.format("Unable to read Scryfall delta manifest %s. Assuming a full update is required.", file.toAbsolutePath()), e).printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Starts a fresh delta store after the base data file has been completely rewritten, deleting any old segments.
+	 *
+	 * @param dataDir The directory containing the data file.
+	 * @param serde The serializer the base data file was written with.
+	 * @param hashes The content hashes of every card in the base data file.
+	 * @return The new delta store.
+	 * @throws IOException If the old segments can't be deleted, or the new index or manifest can't be written.
+	 */
+	static DeltaStore reset(Path dataDir, ScryfallSerde.Implementation serde, Map<UUID, Long> hashes) throws IOException {
+		Manifest old = readManifest(dataDir);
+		Manifest manifest = new Manifest();
+		manifest.serde = serde;
+		manifest.revision = old == null ? 0 : old.revision + 1;
+
+		DeltaStore store = new DeltaStore(dataDir, manifest, hashes);
+		store.save();
+
+		if (old != null) {
+			for (Segment segment : old.segments) {
+				Files.deleteIfExists(dataDir.resolve(segment.file));
+			}
+		}
+
+		return store;
+	}
+
+	/**
+	 * Reads the card hash index, if it hasn't been already.
+	 *
+	 * @return True if the index was read and matches the manifest, or false if a full update is required.
+	 */
+	boolean loadIndex() {
+		if (hashes != null) return true;
+
+		Path file = indexFile(dataDir);
+		if (!Files.exists(file)) return false;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file))))) {
+			if (in.readInt() != INDEX_MAGIC) throw new IOException("Not a Scryfall delta index");
+			if (in.readLong() != manifest.revision) {
+				System.err.printf("Scryfall: Delta index %s is out of date; a full update is required.%n", file);
+				return false;
+			}
+
+			int count = in.readInt();
+			UuidMap<Long> hashes = new UuidMap<>(count);
+			for (int i = 0; i < count; ++i) {
+				long msb = in.readLong(), lsb = in.readLong();
+				hashes.put(msb, lsb, in.readLong());
+			}
+
+			this.hashes = hashes;
+			return true;
+		} catch (IOException | RuntimeException e) {
+			new IOException(String.format("Unable to read Scryfall delta index %s. Assuming a full update is required.", file.toAbsolutePath()), e).printStackTrace();
+			return false;
+		}
+	}
+
+	private void save() throws IOException {
+		Path index = indexFile(dataDir), indexTmp = index.resolveSibling(index.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(Files.newOutputStream(indexTmp), new Deflater(Deflater.BEST_SPEED))))) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeLong(manifest.revision);
+			out.writeInt(hashes.size());
+			for (Map.Entry<UUID, Long> entry : hashes.entrySet()) {
+				out.writeLong(entry.getKey().getMostSignificantBits());
+				out.writeLong(entry.getKey().getLeastSignificantBits());
+				out.writeLong(entry.getValue());
+			}
+		}
+		Files.move(indexTmp, index, StandardCopyOption.REPLACE_EXISTING);
+
+		Path manifestFile = manifestFile(dataDir), manifestTmp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(manifestTmp)) {
+			ScryfallApi.GSON.toJson(manifest, Manifest.class, writer);
+		}
+		Files.move(manifestTmp, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @return The content hash of the given card as of the last update, or null if it wasn't present. Requires
+	 * loadIndex().
+	 */
+	Long hash(UUID id) {
+		return hashes.get(id);
+	}
+
+	/**
+	 * @return The IDs of every card present as of the last update. Requires loadIndex().
+	 */
+	Set<UUID> ids() {
+		return Collections.unmodifiableSet(hashes.keySet());
+	}
+
+	/**
+	 * @return The revision of the merged data, which changes every time a segment is committed or the store is reset.
+	 */
+	long revision() {
+		return manifest.revision;
+	}
+
+	/**
+	 * @return The file the next delta segment should be written to.
+	 */
+	Path nextSegment() {
+		return dataDir.resolve(String.format("scryfall-data.delta-%d%s", manifest.revision + 1, manifest.serde.extension));
+	}
+
+	/**
+	 * Records a delta segment written to nextSegment(). Requires loadIndex().
+	 *
+	 * @param upserted The content hashes of every card written to the segment.
+	 * @param removed The IDs of every card which no longer exists.
+	 * @throws IOException If the index or manifest couldn't be written.
+	 */
+	void commit(Map<UUID, Long> upserted, Collection<UUID> removed) throws IOException {
+		Segment segment = new Segment();
+		segment.file = nextSegment().getFileName().toString();
+		segment.upserted.addAll(upserted.keySet());
+		segment.removed.addAll(removed);
+
+		hashes.putAll(upserted);
+		for (UUID id : removed) hashes.remove(id);
+
+		manifest.segments.add(segment);
+		manifest.revision++;
+		save();
+	}
+
+	/**
+	 * @return True if any delta segments have been committed since the base file was last written.
+	 */
+	boolean hasSegments() {
+		return !manifest.segments.isEmpty();
+	}
+
+	/**
+	 * @return True if enough delta segments have accumulated that they should be compacted into the base file.
+	 */
+	boolean needsCompaction() {
+		if (manifest.segments.size() > MAX_SEGMENTS) return true;
+
+		long changes = manifest.segments.stream().mapToLong(s -> s.upserted.size() + s.removed.size()).sum();
+		return hashes != null && changes > hashes.size() * MAX_DELTA_FRACTION;
+	}
+
+	/**
+	 * @return The number of cards in the merged data. Requires loadIndex().
+	 */
+	int size() {
+		return hashes.size();
+	}
+
+	/**
+	 * Reads the base data file and every delta segment, passing each set and card in the merged data to the given
+	 * consumers. Sets come from the newest file, and are all passed before any card. Each card is passed once, from the
+	 * newest file containing it.
+	 *
+	 * @param baseFile The base data file.
+	 * @param counts Receives the number of cards in each file as it's opened, then less the number skipped from it
+	 *               once it's been read, so the counts add up to the number of cards passed on. May be null.
+	 * @param setConsumer Receives each set.
+	 * @param cardConsumer Receives each card.
+	 * @param parallel If true, cards may be decoded and passed to cardConsumer on several threads at once.
+	 * @throws IOException If any file can't be read.
+	 */
+	void read(Path baseFile, IntConsumer counts, Consumer<emi.lib.mtg.scryfall.api.Set> setConsumer, ScryfallSerde.CardConsumer cardConsumer, boolean parallel) throws IOException {
+		Map<UUID, Integer> owners = new HashMap<>();
+		for (int i = 0; i < manifest.segments.size(); ++i) {
+			Segment segment = manifest.segments.get(i);
+			for (UUID id : segment.upserted) owners.put(id, i);
+			for (UUID id : segment.removed) owners.put(id, -1);
+		}
+
+		int last = manifest.segments.size() - 1;
+		if (last >= 0) readSets(manifest.serde, dataDir.resolve(manifest.segments.get(last).file), setConsumer);
+
+		AtomicInteger skipped = new AtomicInteger();
+		read(manifest.serde, baseFile, counts, last < 0 ? setConsumer : null, card -> {
+			if (!owners.containsKey(card.id)) {
+				cardConsumer.accept(card);
+			} else {
+				skipped.incrementAndGet();
+			}
+		}, parallel);
+		if (counts != null && skipped.get() > 0) counts.accept(-skipped.getAndSet(0));
+
+		for (int i = 0; i <= last; ++i) {
+			final Integer owner = i;
+			read(manifest.serde, dataDir.resolve(manifest.segments.get(i).file), counts, null, card -> {
+				if (owner.equals(owners.get(card.id))) {
+					cardConsumer.accept(card);
+				} else {
+					skipped.incrementAndGet();
+				}
+			}, parallel);
+			if (counts != null && skipped.get() > 0) counts.accept(-skipped.getAndSet(0));
+		}
+	}
+
+	private static void readSets(ScryfallSerde.Implementation impl, Path file, Consumer<emi.lib.mtg.scryfall.api.Set> setConsumer) throws IOException {
+		ScryfallSerde serde = ScryfallSerde.get(impl);
+		serde.startReading(file);
+
+		serde.readStartSets();
+		while (serde.hasNextSet()) {
+			setConsumer.accept(serde.nextSet());
+		}
+		serde.readEndSets();
+
+		try {
+			serde.close();
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Reads a single data file, passing each set and card to the given consumers.
+	 *
+	 * @param impl The serializer the file was written with.
+	 * @param file The data file or delta segment to read.
+	 * @param counts Receives the number of cards in the file once it's known. May be null.
+	 * @param setConsumer Receives each set. May be null to skip them.
+	 * @param cardConsumer Receives each card.
+	 * @param parallel If true, cards may be decoded and passed to cardConsumer on several threads at once.
+	 * @throws IOException If the file can't be read.
+	 */
+	static void read(ScryfallSerde.Implementation impl, Path file, IntConsumer counts, Consumer<emi.lib.mtg.scryfall.api.Set> setConsumer, ScryfallSerde.CardConsumer cardConsumer, boolean parallel) throws IOException {
+		ScryfallSerde serde = ScryfallSerde.get(impl);
+		serde.startReading(file);
+
+		serde.readStartSets();
+		while (serde.hasNextSet()) {
+			emi.lib.mtg.scryfall.api.Set set = serde.nextSet();
+			if (setConsumer != null) setConsumer.accept(set);
+		}
+		serde.readEndSets();
+
+		int count = serde.readStartCards();
+		if (counts != null) counts.accept(count);
+		if (parallel) {
+			serde.readCards(cardConsumer);
+		} else {
+			while (serde.hasNextCard()) {
+				cardConsumer.accept(serde.nextCard());
+			}
+		}
+		serde.readEndCards();
+
+		serde.endReading();
+	}
+
+	/**
+	 * Merges the base data file and every delta segment back into a single base file. Requires loadIndex().
+	 *
+	 * @param baseFile The base data file.
+	 * @param release Drops any mappings of the base file, if it can't be replaced while they're alive. May be null.
+	 * @return The compacted delta store, with no segments.
+	 * @throws IOException If any file can't be read or written.
+	 */
+	DeltaStore compact(Path baseFile, Runnable release) throws IOException {
+		System.out.printf("Scryfall: Compacting %d delta segments into %s%n", manifest.segments.size(), baseFile);
+
+		List<emi.lib.mtg.scryfall.api.Set> sets = new ArrayList<>();
+		readSets(manifest.serde, manifest.segments.isEmpty() ? baseFile : dataDir.resolve(manifest.segments.get(manifest.segments.size() - 1).file), sets::add);
+
+		Path tmp = Files.createTempFile(dataDir, "scryfall-data", manifest.serde.extension);
+		try {
+			ScryfallSerde serde = ScryfallSerde.get(manifest.serde);
+			serde.startWriting(tmp);
+
+			serde.writeStartSets(sets.size());
+			for (emi.lib.mtg.scryfall.api.Set set : sets) serde.writeSet(set);
+			serde.writeEndSets();
+
+			final int[] count = { 0 };
+			serde.writeStartCards(hashes.size());
+			read(baseFile, null, set -> {}, card -> {
+				serde.writeCard(card);
+				++count[0];
+			}, false);
+			serde.writeEndCards();
+			serde.endWriting();
+
+			if (count[0] != hashes.size()) {
+				throw new IOException(String.format("Delta index lists %d cards, but the data files contain %d", hashes.size(), count[0]));
+			}
+
+			Util.replaceFile(tmp, baseFile, release);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+
+		return reset(dataDir, manifest.serde, hashes);
+	}
+
+	/**
+	 * A 64-bit FNV-1a hash, used to tell whether a card's serialized content has changed.
+	 */
+	static long hash(byte[] data, int offset, int length) {
+		return hash(0xcbf29ce484222325L, data, offset, length);
+	}
+
+	/**
+	 * Continues a hash started by hash(byte[], int, int) with more data.
+	 */
+	static long hash(long hash, byte[] data, int offset, int length) {
+		for (int i = offset; i < offset + length; ++i) {
+			hash ^= data[i] & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+}
@@ -5,22 +5,60 @@ import emi.lib.mtg.Mana;
 import emi.lib.mtg.enums.Color;
 import emi.lib.mtg.game.Format;
 import emi.lib.mtg.scryfall.api.enums.GameFormat;
+import emi.lib.mtg.scryfall.util.ArrayMap;
+import emi.lib.mtg.scryfall.util.ArraySet;
+import emi.lib.mtg.scryfall.util.UuidMap;
 
+import java.io.IOException;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cards are built up by several threads at once while loading, so every method which adds to a card synchronizes on it.
+ * ScryfallPrint.addFace() synchronizes on its card too, since it reads the card's main faces.
+ *
+ * A progressive load serves cards while they're still being built, so until a card is compacted, its readers take the
+ * same monitor and get copies of its faces and prints. Once compacted, nothing changes again, and they're served as-is.
+ */
 class ScryfallCard implements Card {
 	// TODO: Branch this out into at *least* a child class for simple, single-faced cards.
 
+	/**
+	 * Most cards share one of a few hundred distinct sets of legalities, so cards share their legality maps too.
+	 */
+	private static final Map<Map<Format, Legality>, Map<Format, Legality>> LEGALITIES = new ConcurrentHashMap<>();
+
+	/**
+	 * Lookup tables for a card's prints, built in one go by compact() and never changed after, so they're safe to read
+	 * from any thread once published.
+	 */
+	private static final class PrintIndex {
+		final UuidMap<ScryfallPrint> byId;
+		final Map<String, ScryfallPrint> byCn;
+
+		PrintIndex(Set<ScryfallPrint> prints, UuidMap<ScryfallPrint> byId) {
+			this.byId = byId;
+			this.byCn = new HashMap<>();
+			for (ScryfallPrint print : prints) byCn.put(Util.cardPrintKey(print.set().code(), print.collectorNumber()), print);
+		}
+	}
+
 	private final UUID oracleId;
 	private Map<ScryfallFace, ScryfallFace> faces, mainFaces;
 	private Map<ScryfallFace, Set<ScryfallFace>> transformedFaces;
 	private Map<ScryfallFace, ScryfallFace> flippedFaces;
 	private Set<ScryfallPrint> prints;
-	private final HashMap<UUID, ScryfallPrint> printsById;
-	private final HashMap<String, ScryfallPrint> printsByCn;
-	private final EnumMap<Format, Legality> legalities;
+	private volatile PrintIndex printIndex;
+	private volatile boolean compacted;
+
+	/**
+	 * Reprint-heavy cards' prints by ID, so addPrint() can find duplicates without scanning every print. It's only ever
+	 * touched under the card's monitor, and becomes part of printIndex once the card is compacted.
+	 */
+	private UuidMap<ScryfallPrint> addedIds;
+	private final Map<Format, Legality> legalities;
 	private final Color.Combination colorIdentity;
-	private Mana.Value manaCost;
+	private volatile Mana.Value manaCost;
 
 	ScryfallCard(emi.lib.mtg.scryfall.api.Card jsonCard) {
 		this.oracleId = jsonCard.oracleId();
@@ -29,31 +67,70 @@ class ScryfallCard implements Card {
 		this.transformedFaces = Collections.emptyMap();
 		this.flippedFaces = Collections.emptyMap();
 		this.prints = Collections.emptySet();
-		this.printsById = new HashMap<>();
-		this.printsByCn = new HashMap<>();
+		this.printIndex = null;
+		this.addedIds = null;
+		this.compacted = false;
 
 		this.colorIdentity = Util.mapColor(Util.orEmpty(jsonCard.colorIdentity));
-		this.legalities = new EnumMap<>(Format.class);
+		EnumMap<Format, Legality> legalities = new EnumMap<>(Format.class);
 		if (jsonCard.legalities != null && !jsonCard.legalities.isEmpty()) {
 			for (Map.Entry<String, emi.lib.mtg.scryfall.api.enums.Legality> entry : jsonCard.legalities.entrySet()) {
 				GameFormat scryfallFormat = GameFormat.byName(entry.getKey());
 				if (scryfallFormat != null && scryfallFormat.libMtgFormat != null) {
-					this.legalities.put(scryfallFormat.libMtgFormat, entry.getValue().libMtgLegality);
+					legalities.put(scryfallFormat.libMtgFormat, entry.getValue().libMtgLegality);
 				} else if (scryfallFormat == null) {
 					System.err.println("Warning: Scryfall is reporting legalities for an unrecognized game format \"" + entry.getKey() + "\" -- someone needs to update libmtg-scryfall!");
 					// The alternative to this case -- this library knows the format but libmtg doesn't -- is a concern as well, but not enough of one to print a log message for every card.
 				}
 			}
 		}
+		this.legalities = legalities.isEmpty() ? Collections.emptyMap() : LEGALITIES.computeIfAbsent(legalities, l -> l);
+	}
+
+	/**
+	 * Restores a card written by write(), without any of its faces or prints.
+	 */
+	ScryfallCard(Snapshot.Input in) throws IOException {
+		this.oracleId = in.readUuid();
+		this.faces = Collections.emptyMap();
+		this.mainFaces = Collections.emptyMap();
+		this.transformedFaces = Collections.emptyMap();
+		this.flippedFaces = Collections.emptyMap();
+		this.prints = Collections.emptySet();
+		this.printIndex = null;
+		this.addedIds = null;
+		this.compacted = false;
+
+		this.colorIdentity = in.readEnum(Color.Combination.class);
+		EnumMap<Format, Legality> legalities = new EnumMap<>(Format.class);
+		for (int i = in.readInt(); i > 0; --i) legalities.put(in.readEnum(Format.class), in.readEnum(Legality.class));
+		this.legalities = legalities.isEmpty() ? Collections.emptyMap() : LEGALITIES.computeIfAbsent(legalities, l -> l);
+	}
+
+	/**
+	 * Writes everything this card serves itself, but not its faces or prints; see Snapshot.
+	 */
+	void write(Snapshot.Output out) throws IOException {
+		out.writeUuid(oracleId);
+		out.writeEnum(colorIdentity);
+		out.writeInt(legalities.size());
+		for (Map.Entry<Format, Legality> entry : legalities.entrySet()) {
+			out.writeEnum(entry.getKey());
+			out.writeEnum(entry.getValue());
+		}
 	}
 
 	ScryfallFace addFace(emi.lib.mtg.scryfall.api.Card cardJson, emi.lib.mtg.scryfall.api.Card.Face faceJson, boolean main) {
-		ScryfallFace face = new ScryfallFace(cardJson, faceJson);
+		return addFace(new ScryfallFace(cardJson, faceJson), main);
+	}
+
+	synchronized ScryfallFace addFace(ScryfallFace face, boolean main) {
+		if (compacted) throw new IllegalStateException(String.format("Attempt to add a face to %s after it was compacted.", this.fullName()));
 		if (faces.containsKey(face)) return faces.get(face);
-		faces = Util.addElem(faces, face, LinkedHashMap::new);
+		faces = Util.addElem(faces, face, ArrayMap::new);
 
 		// TODO: mainFaces should stay consistent with faces; we should manually resort it.
-		if (main) mainFaces = Util.addElem(mainFaces, face, LinkedHashMap::new);
+		if (main) mainFaces = Util.addElem(mainFaces, face, ArrayMap::new);
 
 		return face;
 	}
@@ -63,84 +140,188 @@ class ScryfallCard implements Card {
 	}
 
 	ScryfallFace addTransformedFace(ScryfallFace source, emi.lib.mtg.scryfall.api.Card cardJson, emi.lib.mtg.scryfall.api.Card.Face faceJson) {
-		ScryfallFace face = new ScryfallFace(cardJson, faceJson);
+		return addTransformedFace(source, new ScryfallFace(cardJson, faceJson));
+	}
+
+	synchronized ScryfallFace addTransformedFace(ScryfallFace source, ScryfallFace face) {
+		if (compacted) throw new IllegalStateException(String.format("Attempt to add a face to %s after it was compacted.", this.fullName()));
 		if (faces.containsKey(face)) return faces.get(face);
-		faces = Util.addElem(faces, face, LinkedHashMap::new);
+		faces = Util.addElem(faces, face, ArrayMap::new);
 
 		Set<ScryfallFace> sourceTransforms = transformedFaces.get(source);
 		if (sourceTransforms == null) {
 			sourceTransforms = Collections.emptySet();
 		}
 
-		sourceTransforms = Util.addElem(sourceTransforms, face, LinkedHashSet::new);
-		transformedFaces = Util.addElem(transformedFaces, source, sourceTransforms, LinkedHashMap::new);
+		sourceTransforms = Util.addElem(sourceTransforms, face, ArraySet::new);
+		transformedFaces = Util.addElem(transformedFaces, source, sourceTransforms, ArrayMap::new);
 
 		return face;
 	}
 
 	ScryfallFace addFlippedFace(ScryfallFace source, emi.lib.mtg.scryfall.api.Card cardJson, emi.lib.mtg.scryfall.api.Card.Face faceJson) {
-		ScryfallFace face = new ScryfallFace(cardJson, faceJson);
+		return addFlippedFace(source, new ScryfallFace(cardJson, faceJson));
+	}
+
+	synchronized ScryfallFace addFlippedFace(ScryfallFace source, ScryfallFace face) {
+		if (compacted) throw new IllegalStateException(String.format("Attempt to add a face to %s after it was compacted.", this.fullName()));
 		if (faces.containsKey(face)) return faces.get(face);
-		faces = Util.addElem(faces, face, LinkedHashMap::new);
-		flippedFaces = Util.addElem(flippedFaces, source, face, LinkedHashMap::new);
+		faces = Util.addElem(faces, face, ArrayMap::new);
+		flippedFaces = Util.addElem(flippedFaces, source, face, ArrayMap::new);
 
 		return face;
 	}
 
-	ScryfallPrint addPrint(ScryfallSet set, emi.lib.mtg.scryfall.api.Card jsonCard) {
+	synchronized ScryfallPrint addPrint(ScryfallSet set, emi.lib.mtg.scryfall.api.Card jsonCard) {
 		if (!oracleId.equals(jsonCard.oracleId())) throw new IllegalArgumentException(String.format("Attempt to add %s to %s when oracle IDs differ.", jsonCard.name, this.fullName()));
-		if (printsById.containsKey(jsonCard.id)) return printsById.get(jsonCard.id);
+		ScryfallPrint existing = added(jsonCard.id);
+		if (existing != null) return existing;
 
-		ScryfallPrint printing = new ScryfallPrint(set, this, jsonCard);
+		return addPrint(new ScryfallPrint(set, this, jsonCard));
+	}
 
-		if (prints.isEmpty()) {
-			prints = Collections.singleton(printing);
-		} else {
-			if (prints.size() == 1) prints = new LinkedHashSet<>(prints);
-			prints.add(printing);
-		}
+	synchronized ScryfallPrint addPrint(ScryfallPrint printing) {
+		if (compacted) throw new IllegalStateException(String.format("Attempt to add a print to %s after it was compacted.", this.fullName()));
+		if (printing.card() != this) throw new IllegalArgumentException(String.format("Attempt to add a print of %s to %s.", printing.card().fullName(), this.fullName()));
+		ScryfallPrint existing = added(printing.id());
+		if (existing != null) return existing;
 
-		printsById.put(printing.id(), printing);
-		printsByCn.put(Util.cardPrintKey(printing.set().code(), printing.collectorNumber()), printing);
+		prints = Util.addElem(prints, printing, ArraySet::new);
+
+		// A handful of prints are quicker to scan than to index.
+		if (addedIds != null) {
+			addedIds.put(printing.id(), printing);
+		} else if (prints.size() > ArrayMap.INLINE_LIMIT) {
+			addedIds = new UuidMap<>();
+			for (ScryfallPrint print : prints) addedIds.put(print.id(), print);
+		}
 
 		return printing;
 	}
 
+	private ScryfallPrint added(UUID id) {
+		if (addedIds != null) return addedIds.get(id);
+
+		for (ScryfallPrint print : prints) {
+			if (print.id().equals(id)) return print;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Has every face and print of this card let go of the JSON it was built from. Nothing may be added to the card after.
+	 * Since the card's prints are final by now, this is also where reprint-heavy cards get their lookup tables.
+	 */
+	synchronized void compact() {
+		faces.keySet().forEach(ScryfallFace::compact);
+		prints.forEach(ScryfallPrint::compact);
+
+		if (printIndex == null && addedIds != null) {
+			printIndex = new PrintIndex(prints, addedIds);
+			addedIds = null;
+		}
+
+		compacted = true;
+	}
+
+	/**
+	 * @return True once compact() has been called, after which nothing about the card changes.
+	 */
+	boolean compacted() {
+		return compacted;
+	}
+
+	/**
+	 * Like mainFaces().contains(face), without copying the main faces of a card that's still being built.
+	 */
+	synchronized boolean mainFace(ScryfallFace face) {
+		return mainFaces.containsKey(face);
+	}
+
+	/**
+	 * Computes everything this card and its faces otherwise compute on first use.
+	 */
+	void warmUp() {
+		faces().forEach(ScryfallFace::warmUp);
+		manaCost();
+	}
+
 	@Override
 	public Set<ScryfallFace> faces() {
-		return faces.keySet();
+		if (compacted) return faces.keySet();
+
+		synchronized (this) {
+			return new ArraySet<>(faces.keySet());
+		}
 	};
 
 	@Override
 	public Set<ScryfallFace> mainFaces() {
-		return mainFaces.keySet();
+		if (compacted) return mainFaces.keySet();
+
+		synchronized (this) {
+			return new ArraySet<>(mainFaces.keySet());
+		}
 	}
 
 	@Override
 	public Set<? extends Face> transformed(Face source) {
 		if (!(source instanceof ScryfallFace)) throw new IllegalArgumentException(String.format("%s is not a face of %s", source.name(), name()));
-		return transformedFaces.getOrDefault(source, Collections.emptySet());
+		if (compacted) return transformedFaces.getOrDefault(source, Collections.emptySet());
+
+		synchronized (this) {
+			return new ArraySet<>(transformedFaces.getOrDefault(source, Collections.emptySet()));
+		}
 	}
 
 	@Override
 	public Face flipped(Face source) {
 		if (!(source instanceof ScryfallFace)) throw new IllegalArgumentException(String.format("%s is not a face of %s", source.name(), name()));
-		return flippedFaces.get(source);
+		if (compacted) return flippedFaces.get(source);
+
+		synchronized (this) {
+			return flippedFaces.get(source);
+		}
 	}
 
 	@Override
 	public Set<ScryfallPrint> prints() {
-		return prints;
+		if (compacted) return prints;
+
+		synchronized (this) {
+			return new ArraySet<>(prints);
+		}
 	}
 
 	@Override
 	public ScryfallPrint print(UUID id) {
-		return printsById.get(id);
+		PrintIndex printIndex = this.printIndex;
+		if (printIndex != null) return printIndex.byId.get(id);
+		if (compacted) return added(id);
+
+		synchronized (this) {
+			return added(id);
+		}
 	}
 
 	@Override
 	public ScryfallPrint print(String setCode, String collectorNumber) {
-		return printsByCn.get(Util.cardPrintKey(setCode, collectorNumber));
+		PrintIndex printIndex = this.printIndex;
+		if (printIndex != null) return printIndex.byCn.get(Util.cardPrintKey(setCode, collectorNumber));
+		if (compacted) return scan(setCode, collectorNumber);
+
+		synchronized (this) {
+			return scan(setCode, collectorNumber);
+		}
+	}
+
+	private ScryfallPrint scan(String setCode, String collectorNumber) {
+		for (ScryfallPrint print : prints) {
+			if (print.set().code().equalsIgnoreCase(setCode) && print.collectorNumber().equals(collectorNumber)) return print;
+		}
+
+		return null;
 	}
 
 	@Override
@@ -3,31 +3,52 @@ package emi.lib.mtg.scryfall;
 import emi.lib.mtg.Card;
 import emi.lib.mtg.DataSource;
 import emi.lib.mtg.enums.StandardFrame;
+import emi.lib.mtg.scryfall.api.BulkDataList;
+import emi.lib.mtg.scryfall.api.CardStream;
 import emi.lib.mtg.scryfall.api.ScryfallApi;
 import emi.lib.mtg.scryfall.api.Catalog;
 import emi.lib.mtg.scryfall.api.enums.CardFrame;
 import emi.lib.mtg.scryfall.api.enums.CardLayout;
 import emi.lib.mtg.scryfall.api.enums.GameFormat;
 import emi.lib.mtg.scryfall.api.enums.SetType;
+import emi.lib.mtg.scryfall.serde.Mapped;
+import emi.lib.mtg.scryfall.serde.MessagePack;
 import emi.lib.mtg.scryfall.serde.ScryfallSerde;
+import emi.lib.mtg.scryfall.util.BatchProcessor;
 import emi.lib.mtg.scryfall.util.CardId;
+import emi.lib.mtg.scryfall.util.FrozenMap;
 import emi.lib.mtg.scryfall.util.MirrorMap;
+import emi.lib.mtg.scryfall.util.Pipeline;
+import emi.lib.mtg.scryfall.util.UuidMap;
 import emi.mtg.deckbuilder.controller.Context;
 import emi.mtg.deckbuilder.controller.Updateable;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.MessageBuffer;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiFunction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 public class ScryfallDataSource implements DataSource, Updateable {
 	public static boolean excludeCard(emi.lib.mtg.scryfall.api.Card card) {
@@ -71,10 +92,95 @@ public class ScryfallDataSource implements DataSource, Updateable {
 		return Collections.unmodifiableSet(tmp);
 	}
 
-	private final MirrorMap<UUID, ScryfallPrint> prints = new MirrorMap<>(Hashtable::new);
-	private final MirrorMap<CardId, ScryfallCard> cards = new MirrorMap<>(Hashtable::new);
-	private final MirrorMap<String, ScryfallSet> sets = new MirrorMap<>(Hashtable::new);
-	private final Map<String, ScryfallCard> cardNameIndex = new HashMap<>();
+	/**
+	 * Everything loaded from one data file. loadData() builds each generation off to the side, then publishes it with a
+	 * single write to current, so readers see the previous generation right up until the new one is complete. The one
+	 * exception is a progressive first load, which has nothing else to serve, so it's published once its sets are loaded.
+	 */
+	private static class Generation {
+		// Cards are processed on several threads at once, so every index is a concurrent map until freeze(). Changes to an
+		// individual card or print are guarded by that card's own monitor; see ScryfallCard.
+		volatile MirrorMap<UUID, ScryfallPrint> prints = new MirrorMap<>(ConcurrentHashMap::new);
+		volatile MirrorMap<CardId, ScryfallCard> cards = new MirrorMap<>(ConcurrentHashMap::new);
+		volatile MirrorMap<String, ScryfallSet> sets = new MirrorMap<>(ConcurrentHashMap::new);
+		volatile Map<String, ScryfallCard> cardNameIndex = new ConcurrentHashMap<>();
+
+		/**
+		 * Meld cards can't be built until every card they refer to has been decoded, so process() only collects them here,
+		 * and linkMelds() builds them once every card has been processed.
+		 */
+		final Map<UUID, emi.lib.mtg.scryfall.api.Card> meldCards = new ConcurrentHashMap<>();
+
+		/**
+		 * When the data file is mapped, cards are only processed once something asks for them. These track which records
+		 * have been processed so far, guarded by the generation's monitor; once everything has been, store goes back to
+		 * null.
+		 */
+		volatile Mapped.Store store;
+		final Set<Integer> materialized = new HashSet<>();
+
+		/**
+		 * Completes once every card has been loaded, or completes exceptionally if loading failed.
+		 */
+		final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+		/**
+		 * Once every card has been processed, replaces the indices with compact immutable copies, and drops the JSON the
+		 * cards were built from. They're read far more often than they're written, and never written again; the next load
+		 * builds a new generation.
+		 */
+		void freeze() {
+			this.cards.values().forEach(ScryfallCard::compact);
+			this.sets.values().forEach(ScryfallSet::freeze);
+			this.sets = frozen(this.sets);
+			this.cards = frozen(this.cards);
+			final UuidMap<ScryfallPrint> prints = new UuidMap<>(this.prints);
+			this.prints = new MirrorMap<>(() -> prints);
+			this.cardNameIndex = FrozenMap.copyOf(this.cardNameIndex);
+		}
+
+		void clear() {
+			this.store = null;
+			this.materialized.clear();
+			this.cards = new MirrorMap<>(ConcurrentHashMap::new);
+			this.prints = new MirrorMap<>(ConcurrentHashMap::new);
+			this.sets = new MirrorMap<>(ConcurrentHashMap::new);
+			this.cardNameIndex = new ConcurrentHashMap<>();
+			this.meldCards.clear();
+		}
+
+		/**
+		 * Waits out any progressive load still underway. Failures were already reported by the loader thread, so whatever
+		 * did load is served as-is.
+		 */
+		void awaitLoaded() {
+			try {
+				loaded.join();
+			} catch (CompletionException | CancellationException e) {
+				// Already reported.
+			}
+		}
+
+		private static <K, V> MirrorMap<K, V> frozen(Map<K, V> map) {
+			final FrozenMap<K, V> frozen = FrozenMap.copyOf(map);
+			return new MirrorMap<>(() -> frozen);
+		}
+	}
+
+	private static Generation empty() {
+		Generation gen = new Generation();
+		gen.loaded.complete(null);
+		return gen;
+	}
+
+	/**
+	 * current is the generation readers are served from; loading is the one most recently started, which is the same
+	 * generation once it's finished. loadData() only replaces loading under loadLock, once the previous load is done.
+	 * Anyone waiting on a particular print in the meantime is parked in printWaiters.
+	 */
+	private volatile Generation current = empty(), loading = current;
+	private final Object loadLock = new Object();
+	private final Map<UUID, CompletableFuture<Card.Print>> printWaiters = new ConcurrentHashMap<>();
 
 	@Override
 	public String toString() {
@@ -88,47 +194,146 @@ public class ScryfallDataSource implements DataSource, Updateable {
 
 	@Override
 	public Card card(String name, char variation) {
-		return cardNameIndex.get(name);
+		Generation gen = this.current;
+		Mapped.Store store = gen.store;
+		if (store != null) {
+			synchronized (gen) {
+				materialize(gen, store.recordsByName(name));
+				return gen.cardNameIndex.get(name);
+			}
+		}
+
+		return gen.cardNameIndex.get(name);
 	}
 
 	@Override
 	public Set<? extends Card> cards() {
-		return cards.valueSet();
+		Generation gen = this.current;
+		gen.awaitLoaded();
+		materializeAll(gen);
+		return gen.cards.valueSet();
 	}
 
 	@Override
 	public Set<? extends Card.Print> prints() {
-		return prints.valueSet();
+		Generation gen = this.current;
+		gen.awaitLoaded();
+		materializeAll(gen);
+		return gen.prints.valueSet();
 	}
 
 	@Override
 	public Card.Print print(UUID id) {
-		return prints.get(id);
+		Generation gen = this.current;
+		Mapped.Store store = gen.store;
+		if (store != null) materialize(gen, store.record(id));
+		return gen.prints.get(id);
 	}
 
+	/**
+	 * While loading progressively, every set is available straight away, but their prints fill in as cards load. Sets in
+	 * a mapped data file process their records the first time their prints are asked for.
+	 */
 	@Override
 	public Set<? extends emi.lib.mtg.Set> sets() {
-		return sets.valueSet();
+		return this.current.sets.valueSet();
 	}
 
 	@Override
 	public emi.lib.mtg.Set set(String code) {
-		return sets.get(code.toLowerCase());
+		return this.current.sets.get(code.toLowerCase());
+	}
+
+	/**
+	 * @return A future which completes once the most recent loadData() has loaded every card and its data is being served,
+	 * or completes exceptionally if loading failed. It's already complete unless progressive loading is underway.
+	 */
+	public CompletableFuture<Void> loaded() {
+		return loading.loaded.thenApply(x -> x);
+	}
+
+	/**
+	 * Returns the print with the given ID, waiting for it to load if progressive loading is still underway.
+	 *
+	 * @return The print, or null if there's no such print once every card has loaded.
+	 * @throws IOException If loading fails, or the thread is interrupted while waiting.
+	 */
+	public Card.Print awaitPrint(UUID id) throws IOException {
+		Card.Print print = print(id);
+		if (print != null) return print;
+
+		Generation loading = this.loading;
+		CompletableFuture<Card.Print> waiter = printWaiters.computeIfAbsent(id, x -> new CompletableFuture<>());
+
+		// The print may have been indexed, or loading may have finished, before we started waiting.
+		if (loading.loaded.isDone() || (print = print(id)) != null) {
+			printWaiters.remove(id, waiter);
+			if (print != null) return print;
+			await(loading.loaded);
+			return print(id);
+		}
+
+		return await(waiter);
+	}
+
+	/**
+	 * Returns the set with the given code once all of its prints have loaded. Mapped data files can load a single set's
+	 * cards on demand; otherwise, there's no telling a set is complete until every card has loaded.
+	 *
+	 * @return The set, or null if there's no such set.
+	 * @throws IOException If loading fails, or the thread is interrupted while waiting.
+	 */
+	public emi.lib.mtg.Set awaitSet(String code) throws IOException {
+		Generation loading = this.loading;
+		if (loading.store == null) await(loading.loaded);
+		return set(code);
+	}
+
+	private static <T> T await(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException("Interrupted while waiting for Scryfall data to load");
+		} catch (ExecutionException ee) {
+			throw ee.getCause() instanceof IOException ? (IOException) ee.getCause() : new IOException(ee.getCause());
+		}
 	}
 
 	private Path dataFile(Path dataDir) {
 		return dataDir.resolve("scryfall-data" + ScryfallPreferences.get().serde.extension);
 	}
 
+	private Path bulkInfoFile(Path dataDir) {
+		return dataDir.resolve("scryfall-bulk.json");
+	}
+
+	private void markUpToDate(Path dataFile, Progress progress) throws IOException {
+		System.out.printf("Scryfall: Bulk data hasn't changed since %s was written; skipping update.%n", dataFile);
+		Files.setLastModifiedTime(dataFile, FileTime.from(Instant.now()));
+		if (progress != null) progress.accept(1.0, "Already up to date.");
+	}
+
 	@Override
 	public void update(Path dataDir, Progress progress) throws IOException {
 		ScryfallApi api = ScryfallApi.get();
 		ScryfallSerde serde = ScryfallSerde.get();
+		Path dataFile = dataFile(dataDir);
+
+		// If our data file was built from the bulk file Scryfall is currently offering, there's nothing to do.
+		BulkDataList.Entry bulkEntry = api.defaultCardsEntry();
+		BulkDataInfo previous = Files.exists(dataFile) && !Util.jarNewerThan(dataFile) ? BulkDataInfo.load(bulkInfoFile(dataDir)) : null;
+		if (previous != null && previous.serde != serde.type()) previous = null;
+
+		if (previous != null && previous.matches(bulkEntry, serde.type())) {
+			markUpToDate(dataFile, progress);
+			return;
+		}
 
-		System.out.printf("Scryfall: Using %s serializer to save to %s%n", serde.type(), dataFile(dataDir));
+		// If the data file is current as of some earlier bulk file, we can get away with writing only what changed.
+		DeltaStore delta = previous != null && ScryfallPreferences.get().incrementalUpdates ? DeltaStore.load(dataDir, serde.type()) : null;
+		if (delta != null && !delta.loadIndex()) delta = null;
 
-		Path tmp = Files.createTempFile("scryfall-data", serde.type().extension);
-		serde.startWriting(tmp);
+		System.out.printf("Scryfall: Using %s serializer to save %s to %s%n", serde.type(), delta != null ? "changes" : "all cards", delta != null ? delta.nextSegment() : dataFile);
 
 		List<emi.lib.mtg.scryfall.api.Set> sets = api.sets();
 		Set<String> droppedSets = new HashSet<>();
@@ -141,79 +346,197 @@ public class ScryfallDataSource implements DataSource, Updateable {
 			}
 		}).collect(Collectors.toList());
 
-		serde.writeStartSets(sets.size());
-		for (emi.lib.mtg.scryfall.api.Set set : sets) serde.writeSet(set);
-		serde.writeEndSets();
-
-		List<emi.lib.mtg.scryfall.api.Card> cards = api.defaultCardsBulk(d -> progress.accept(0.5 * d, "Downloading database..."));
-		cards = cards.stream().filter(card -> !(excludeCard(card) || droppedSets.contains(card.set)))
-			.peek(card -> {
-				// Null out some excess data here to save hard drive space.
-				DROPPED_FORMATS.forEach(f -> card.legalities.remove(f.serialized()));
-				card.purchaseUris = null;
-				card.relatedUris = null;
-				card.printsSearchUri = null;
-				card.rulingsUri = null;
-				card.setSearchUri = null;
-
-				if (card.allParts != null) {
-					card.allParts.removeIf(p -> "token".equals(p.component) || "combo_piece".equals(p.component));
-
-					if (card.allParts.isEmpty()) {
-						card.allParts = null;
+		// Stage the bulk file to disk so a dropped connection can pick up where it left off, but parse it as it arrives
+		// rather than waiting for the whole thing.
+		BulkStaging staging = new BulkStaging(dataDir);
+		staging.start(api, bulkEntry, previous != null ? previous.validators() : null, null);
+		boolean finished = false;
+
+		try {
+			if (!staging.awaitStarted()) {
+				markUpToDate(dataFile, progress);
+				finished = true;
+				return;
+			}
+
+			// Written next to the data file, so it can be moved over it in one step; see Util.replaceFile().
+			Path tmp = Files.createTempFile(dataDir, "scryfall-data", serde.type().extension);
+			try {
+				serde.startWriting(tmp);
+
+				serde.writeStartSets(sets.size());
+				for (emi.lib.mtg.scryfall.api.Set set : sets) serde.writeSet(set);
+				serde.writeEndSets();
+
+				// The card count has to be known before the first card is written, but Scryfall doesn't tell us how many
+				// cards survive filtering until we've seen all of them. Rather than holding the whole bulk file in memory,
+				// spool the filtered cards to a temporary file as they're parsed, then replay them into the serializer.
+				// In incremental mode, only cards whose content hash changed are spooled.
+				Path spool = Files.createTempFile("scryfall-cards", ".msgpack.z");
+				Map<UUID, Long> hashes = new HashMap<>(), changed = new HashMap<>();
+				try {
+					int generation = staging.generation();
+					try {
+						spoolCards(staging, droppedSets, delta, hashes, changed, spool, progress);
+					} catch (IOException ioe) {
+						// If the server couldn't resume the download, we have to start reading over from the beginning too.
+						if (staging.generation() == generation) throw ioe;
+						System.err.printf("Scryfall: Bulk data download restarted while it was being read; reading it again once it's complete.%n");
+						staging.awaitFinished();
+						spoolCards(staging, droppedSets, delta, hashes, changed, spool, progress);
 					}
+
+					staging.awaitFinished();
+					saveCards(serde, spool, changed.size(), progress);
+				} finally {
+					Files.deleteIfExists(spool);
 				}
-			}).collect(Collectors.toList());
 
-		serde.writeStartCards(cards.size());
-		int statusCounter = 0;
-		for (emi.lib.mtg.scryfall.api.Card card : cards) {
-			serde.writeCard(card);
+				serde.endWriting();
 
-			if (progress != null) {
-				++statusCounter;
-				progress.accept(0.5 + 0.5 * (double) statusCounter / (double) cards.size(), "Saving cards...");
-			}
-		}
-		serde.writeEndCards();
+				if (delta == null) {
+					Util.replaceFile(tmp, dataFile, this::releaseMappings);
+					DeltaStore.reset(dataDir, serde.type(), hashes);
+				} else {
+					Set<UUID> removed = new HashSet<>(delta.ids());
+					removed.removeAll(hashes.keySet());
+					System.out.printf("Scryfall: %d cards added or changed, %d removed.%n", changed.size(), removed.size());
+
+					if (!changed.isEmpty() || !removed.isEmpty()) {
+						Files.move(tmp, delta.nextSegment(), StandardCopyOption.REPLACE_EXISTING);
+						delta.commit(changed, removed);
+
+						if (delta.needsCompaction()) {
+							if (progress != null) progress.accept(1.0, "Compacting database...");
+							delta.compact(dataFile, this::releaseMappings);
+						}
+					}
 
-		serde.endWriting();
+					Files.setLastModifiedTime(dataFile, FileTime.from(Instant.now()));
+				}
+			} finally {
+				// Moved into place by now, unless there was nothing to save or something went wrong.
+				Files.deleteIfExists(tmp);
+			}
 
-		Files.copy(tmp, dataFile(dataDir), StandardCopyOption.REPLACE_EXISTING);
-		Files.delete(tmp);
+			new BulkDataInfo(bulkEntry, staging.validators(), serde.type()).save(bulkInfoFile(dataDir));
+			staging.discard();
+			finished = true;
+		} finally {
+			if (!finished) staging.cancel();
+		}
 
 		System.gc();
 		System.gc();
 	}
 
-	@Override
-	public boolean updateAvailable(Path dataDir) {
-		return Util.needsUpdate(dataFile(dataDir), (long) ScryfallPreferences.get().updateInterval * 24 * 60 * 60);
+	private static final int PIPELINE_CAPACITY = 256;
+	private static final long PIPELINE_REPORT_INTERVAL = 250;
+
+	/**
+	 * Parses, filters and prunes cards from the bulk file as it's downloaded, and spools the survivors to a temporary
+	 * file. Each step runs on its own thread.
+	 *
+	 * @param delta If not null, cards whose content hash hasn't changed since the last update aren't spooled.
+	 * @param hashes Receives the content hash of every card which survived filtering.
+	 * @param changed Receives the content hash of every card written to the spool.
+	 */
+	private void spoolCards(BulkStaging staging, Set<String> droppedSets, DeltaStore delta, Map<UUID, Long> hashes, Map<UUID, Long> changed, Path spool, Progress progress) throws IOException {
+		final AtomicLong read = new AtomicLong();
+		hashes.clear();
+		changed.clear();
+
+		try (CardStream cards = new CardStream(staging.tail(read::set));
+			 OutputStream out = new DeflaterOutputStream(Files.newOutputStream(spool), new Deflater(Deflater.BEST_SPEED));
+			 MessageBufferPacker packer = org.msgpack.core.MessagePack.newDefaultBufferPacker()) {
+			Pipeline pipeline = new Pipeline("Scryfall Update", PIPELINE_CAPACITY);
+			pipeline.monitor("Download", "MB", 1 << 20, staging::written);
+
+			pipeline.<emi.lib.mtg.scryfall.api.Card>source("Parse", () -> cards.hasNext() ? cards.next() : null)
+					.then("Filter", card -> {
+						if (excludeCard(card) || droppedSets.contains(card.set)) return null;
+						pruneCard(card);
+						return card;
+					})
+					.sink("Spool", card -> {
+						packer.clear();
+						MessagePack.packApiObject(packer, card);
+						MessageBuffer buffer = packer.toMessageBuffer();
+						long hash = DeltaStore.hash(buffer.array(), buffer.arrayOffset(), buffer.size());
+
+						hashes.put(card.id, hash);
+						if (delta != null && Objects.equals(delta.hash(card.id), hash)) return;
+
+						changed.put(card.id, hash);
+						out.write(buffer.array(), buffer.arrayOffset(), buffer.size());
+					});
+
+			pipeline.run(p -> {
+				if (progress == null) return;
+				long size = staging.expectedSize();
+				progress.accept(size > 0 ? 0.6 * read.get() / size : 0.0, String.format("Reading database (%s)...", p.throughput()));
+			}, PIPELINE_REPORT_INTERVAL);
+		}
 	}
 
-	private final Map<UUID, CompletableFuture<emi.lib.mtg.scryfall.api.Card>> await = new Hashtable<>();
+	/**
+	 * Replays spooled cards into the serializer, decoding the spool and encoding the data file on separate threads.
+	 */
+	private void saveCards(ScryfallSerde serde, Path spool, int count, Progress progress) throws IOException {
+		final AtomicInteger saved = new AtomicInteger();
+
+		serde.writeStartCards(count);
+		try (MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(new InflaterInputStream(Files.newInputStream(spool)))) {
+			Pipeline pipeline = new Pipeline("Scryfall Save", PIPELINE_CAPACITY);
+
+			pipeline.<emi.lib.mtg.scryfall.api.Card>source("Unspool", () -> unpacker.hasNext() ? MessagePack.unpackApiObject(unpacker, emi.lib.mtg.scryfall.api.Card.class) : null)
+					.sink("Save", card -> {
+						serde.writeCard(card);
+						saved.incrementAndGet();
+					});
+
+			pipeline.run(p -> {
+				if (progress != null) progress.accept(0.6 + 0.4 * saved.get() / Math.max(1, count), String.format("Saving cards (%s)...", p.throughput()));
+			}, PIPELINE_REPORT_INTERVAL);
+		}
 
-	private CompletableFuture<emi.lib.mtg.scryfall.api.Card> await(UUID id) {
-		return await.computeIfAbsent(id, x -> new CompletableFuture<>());
+		if (saved.get() != count) throw new IOException(String.format("Expected to save %d cards, but only found %d in the spool", count, saved.get()));
+		serde.writeEndCards();
 	}
 
-	protected void process(emi.lib.mtg.scryfall.api.Card card) {
-		CompletableFuture<emi.lib.mtg.scryfall.api.Card> pending = await.get(card.id);
+	private static void pruneCard(emi.lib.mtg.scryfall.api.Card card) {
+		// Null out some excess data here to save hard drive space.
+		DROPPED_FORMATS.forEach(f -> card.legalities.remove(f.serialized()));
+		card.purchaseUris = null;
+		card.relatedUris = null;
+		card.printsSearchUri = null;
+		card.rulingsUri = null;
+		card.setSearchUri = null;
 
-		if (pending != null) {
-			if (!pending.complete(card)) System.err.printf("!? We already completed meld for %s!?%n", card.name);
-			return;
+		if (card.allParts != null) {
+			card.allParts.removeIf(p -> "token".equals(p.component) || "combo_piece".equals(p.component));
+
+			if (card.allParts.isEmpty()) {
+				card.allParts = null;
+			}
 		}
+	}
 
+	@Override
+	public boolean updateAvailable(Path dataDir) {
+		return Util.needsUpdate(dataFile(dataDir), (long) ScryfallPreferences.get().updateInterval * 24 * 60 * 60);
+	}
+
+	private void process(Generation gen, emi.lib.mtg.scryfall.api.Card card) {
 		if ("Who // What // When // Where // Why".equals(card.name)) {
-			createWhoWhatWhenWhereWhy(card);
+			createWhoWhatWhenWhereWhy(gen, card);
 			return;
 		}
 
 		if ("Smelt // Herd // Saw".equals(card.name)) {
 			card.typeLine = card.typeLine.replaceAll(" [/][/] ", " ");
 			card.manaCost = card.manaCost.replaceAll(" [/][/] ", "");
-			createSimple(card);
+			createSimple(gen, card);
 			return;
 		}
 
@@ -234,20 +557,20 @@ public class ScryfallDataSource implements DataSource, Updateable {
 			case Mutate:
 			case Prototype:
 			case Case:
-				createSimple(card);
+				createSimple(gen, card);
 				return;
 			case ReversibleCard:
-				createReversible(card);
+				createReversible(gen, card);
 				return;
 			case Split:
 			case Flip:
 			case Transform:
 			case ModalDFC:
 			case Adventure:
-				createTwoFace(card);
+				createTwoFace(gen, card);
 				return;
 			case Meld:
-				initMeld(card);
+				gen.meldCards.put(card.id, card);
 				return;
 			case Token:
 			case DoubleFacedToken:
@@ -280,10 +603,10 @@ public class ScryfallDataSource implements DataSource, Updateable {
 		W5_FRAMES_OLD = Collections.unmodifiableMap(oldTmp);
 	}
 
-	private void createWhoWhatWhenWhereWhy(emi.lib.mtg.scryfall.api.Card jsonCard) {
-		ScryfallSet set = sets.get(jsonCard.set);
+	private void createWhoWhatWhenWhereWhy(Generation gen, emi.lib.mtg.scryfall.api.Card jsonCard) {
+		ScryfallSet set = gen.sets.get(jsonCard.set);
 
-		ScryfallCard card = cards.computeIfAbsent(CardId.of(jsonCard), id -> new ScryfallCard(jsonCard));
+		ScryfallCard card = gen.cards.computeIfAbsent(CardId.of(jsonCard), id -> new ScryfallCard(jsonCard));
 
 		jsonCard.cardFaces.sort(Comparator.comparingInt(a -> W5_MAP.get(a.name)));
 		List<ScryfallFace> faces = jsonCard.cardFaces.stream().map(jf -> card.addFace(jsonCard, jf, true)).collect(Collectors.toList());
@@ -292,54 +615,45 @@ public class ScryfallDataSource implements DataSource, Updateable {
 		ScryfallPrint print = card.addPrint(set, jsonCard);
 		faces.stream().forEachOrdered(f -> print.addFace(f, false, (old ? W5_FRAMES_OLD : W5_FRAMES_NEW).get(f.name()), jsonCard, f.faceJson));
 
-		set.prints.put(print.id(), print);
-		set.printsByCn.put(print.collectorNumber(), print);
-		prints.put(print.id(), print);
-		cardNameIndex.put(card.name(), card);
+		index(gen, set, card, print);
 	}
 
-	private void createSimple(emi.lib.mtg.scryfall.api.Card jsonCard) {
-		ScryfallSet set = sets.get(jsonCard.set);
+	private void createSimple(Generation gen, emi.lib.mtg.scryfall.api.Card jsonCard) {
+		ScryfallSet set = gen.sets.get(jsonCard.set);
 		if (set == null) {
 			System.err.printf("Skipping %s %s %s as the ScryfallSet is null...\n", jsonCard.name, jsonCard.set, jsonCard.collectorNumber);
 			return;
 		}
 
-		ScryfallCard card = cards.computeIfAbsent(CardId.of(jsonCard), id -> new ScryfallCard(jsonCard));
+		ScryfallCard card = gen.cards.computeIfAbsent(CardId.of(jsonCard), id -> new ScryfallCard(jsonCard));
 		ScryfallFace front = card.addFace(jsonCard, true);
 
 		ScryfallPrint print = card.addPrint(set, jsonCard);
 		ScryfallPrintedFace frontPrint = print.addFace(front, false, isSideways(jsonCard.typeLine) ? StandardFrame.SidewaysFullFace : StandardFrame.FullFace, jsonCard, null);
 
-		set.prints.put(print.id(), print);
-		set.printsByCn.put(print.collectorNumber(), print);
-		prints.put(print.id(), print);
-		cardNameIndex.put(card.name(), card);
+		index(gen, set, card, print);
 	}
 
-	private void createReversible(emi.lib.mtg.scryfall.api.Card jsonCard) {
-		ScryfallSet set = sets.get(jsonCard.set);
+	private void createReversible(Generation gen, emi.lib.mtg.scryfall.api.Card jsonCard) {
+		ScryfallSet set = gen.sets.get(jsonCard.set);
 
-		ScryfallCard card = cards.computeIfAbsent(CardId.of(jsonCard.cardFaces.get(0)), id -> new ScryfallCard(jsonCard));
+		ScryfallCard card = gen.cards.computeIfAbsent(CardId.of(jsonCard.cardFaces.get(0)), id -> new ScryfallCard(jsonCard));
 		ScryfallFace front = card.addFace(jsonCard, jsonCard.cardFaces.get(0), true);
 
 		ScryfallPrint print = card.addPrint(set, jsonCard);
 		ScryfallPrintedFace frontPrint = print.addFace(front, false, StandardFrame.FullFace, jsonCard, jsonCard.cardFaces.get(0));
 		ScryfallPrintedFace backPrint = print.addFace(front, true, StandardFrame.FullFace, jsonCard, jsonCard.cardFaces.get(1));
 
-		set.prints.put(print.id(), print);
-		set.printsByCn.put(print.collectorNumber(), print);
-		prints.put(print.id(), print);
-		cardNameIndex.put(card.name(), card);
+		index(gen, set, card, print);
 	}
 
 	private static boolean isSideways(String typeLine) {
 		return typeLine.contains("Battle") || typeLine.contains("Phenomenon") || typeLine.contains("Plane ");
 	}
 
-	private void createTwoFace(emi.lib.mtg.scryfall.api.Card jsonCard) {
-		ScryfallSet set = sets.get(jsonCard.set);
-		ScryfallCard card = cards.computeIfAbsent(CardId.of(jsonCard.cardFaces.get(0), jsonCard.cardFaces.get(1)), id -> new ScryfallCard(jsonCard));
+	private void createTwoFace(Generation gen, emi.lib.mtg.scryfall.api.Card jsonCard) {
+		ScryfallSet set = gen.sets.get(jsonCard.set);
+		ScryfallCard card = gen.cards.computeIfAbsent(CardId.of(jsonCard.cardFaces.get(0), jsonCard.cardFaces.get(1)), id -> new ScryfallCard(jsonCard));
 
 		boolean back;
 		StandardFrame firstFrame, secondFrame;
@@ -426,19 +740,29 @@ public class ScryfallDataSource implements DataSource, Updateable {
 		ScryfallPrintedFace firstPrint = print.addFace(first, false, firstFrame, jsonCard, jsonCard.cardFaces.get(0));
 		ScryfallPrintedFace secondPrint = print.addFace(second, back, secondFrame, jsonCard, jsonCard.cardFaces.get(1));
 
+		index(gen, set, card, print);
+	}
+
+	private void index(Generation gen, ScryfallSet set, ScryfallCard card, ScryfallPrint print) {
 		set.prints.put(print.id(), print);
 		set.printsByCn.put(print.collectorNumber(), print);
-		prints.put(print.id(), print);
-		cardNameIndex.put(card.name(), card);
+		gen.prints.put(print.id(), print);
+		gen.cardNameIndex.put(card.name(), card);
+
+		// Waiters on a generation that isn't being served yet are released once it is; see finish().
+		if (gen == current && !printWaiters.isEmpty()) {
+			CompletableFuture<Card.Print> waiter = printWaiters.remove(print.id());
+			if (waiter != null) waiter.complete(print);
+		}
 	}
 
-	private final BiFunction<emi.lib.mtg.scryfall.api.Card, emi.lib.mtg.scryfall.api.Card, ScryfallPrint> meld = (jsonFront, jsonBack) -> {
-		ScryfallCard card = cards.computeIfAbsent(CardId.of(jsonFront, jsonBack), id -> new ScryfallCard(jsonFront));
+	private ScryfallPrint meld(Generation gen, emi.lib.mtg.scryfall.api.Card jsonFront, emi.lib.mtg.scryfall.api.Card jsonBack) {
+		ScryfallCard card = gen.cards.computeIfAbsent(CardId.of(jsonFront, jsonBack), id -> new ScryfallCard(jsonFront));
 		ScryfallFace front = card.addFace(jsonFront, true);
 		ScryfallFace back = card.addTransformedFace(front, jsonBack, null);
 
-		ScryfallSet set = sets.get(jsonFront.set);
-		ScryfallSet backSet = sets.get(jsonBack.set);
+		ScryfallSet set = gen.sets.get(jsonFront.set);
+		ScryfallSet backSet = gen.sets.get(jsonBack.set);
 
 		if (set != backSet) throw new IllegalStateException(String.format("Attempt to construct meld print from two different sets %s and %s", set, backSet));
 
@@ -446,118 +770,401 @@ public class ScryfallDataSource implements DataSource, Updateable {
 		ScryfallPrintedFace frontPrint = print.addFace(front, false, StandardFrame.FullFace, jsonFront, null);
 		ScryfallPrintedFace backPrint = print.addFace(back, true, StandardFrame.Meld, jsonBack, null);
 
-		set.prints.put(print.id(), print);
-		set.printsByCn.put(print.collectorNumber(), print);
-		prints.put(print.id(), print);
-		cardNameIndex.put(card.name(), card);
+		index(gen, set, card, print);
 
 		return print;
-	};
+	}
 
-	private void initMeld(emi.lib.mtg.scryfall.api.Card jsonCard) {
-		CompletableFuture<emi.lib.mtg.scryfall.api.Card> awaitOne = null, awaitOther = null, awaitBack = null;
+	private static UUID meldPart(emi.lib.mtg.scryfall.api.Card jsonCard, String component) {
+		if (jsonCard.allParts == null) return null;
 
 		for (emi.lib.mtg.scryfall.api.Card.Part part : jsonCard.allParts) {
-			CompletableFuture<emi.lib.mtg.scryfall.api.Card> await;
+			if (component.equals(part.component) && (!"meld_part".equals(component) || part.id.equals(jsonCard.id))) return part.id;
+		}
 
-			if (part.id.equals(jsonCard.id)) {
-				await = CompletableFuture.completedFuture(jsonCard);
-			} else {
-				await = await(part.id);
+		return null;
+	}
+
+	/**
+	 * Builds a card for each meld part collected by process(), by looking up its meld result among the other collected
+	 * meld cards. Parts are linked in order of ID, so the result doesn't depend on which thread processed what.
+	 */
+	private void linkMelds(Generation gen) {
+		List<emi.lib.mtg.scryfall.api.Card> parts = gen.meldCards.values().stream()
+				.filter(c -> meldPart(c, "meld_part") != null)
+				.sorted(Comparator.comparing(c -> c.id))
+				.collect(Collectors.toList());
+
+		Map<UUID, List<ScryfallPrint>> melded = new LinkedHashMap<>();
+		for (emi.lib.mtg.scryfall.api.Card part : parts) {
+			UUID resultId = meldPart(part, "meld_result");
+			emi.lib.mtg.scryfall.api.Card result = resultId != null ? gen.meldCards.get(resultId) : null;
+			if (result == null) {
+				System.err.printf("Skipping meld part %s %s %s as its meld result is missing...%n", part.name, part.set, part.collectorNumber);
+				continue;
 			}
 
-			if ("meld_result".equals(part.component)) {
-				awaitBack = await;
-			} else if ("meld_part".equals(part.component)) {
-				if (awaitOne != null) awaitOther = awaitOne;
-				awaitOne = await;
-			} else {
-				System.err.printf("Unexpected component %s in meld parts for %s; ignoring...%n", part.component, jsonCard.name);
+			try {
+				melded.computeIfAbsent(resultId, id -> new ArrayList<>()).add(meld(gen, part, result));
+			} catch (IllegalStateException ise) {
+				System.err.printf("Skipping meld part %s %s %s: %s%n", part.name, part.set, part.collectorNumber, ise.getMessage());
 			}
 		}
 
-		assert awaitOne != null && awaitOther != null && awaitBack != null : String.format("Impossible meld combination related to %s", jsonCard.name);
-
-		CompletableFuture<ScryfallPrint> one = awaitOne.thenCombine(awaitBack, meld),
-				other = awaitOther.thenCombine(awaitBack, meld);
-
-		one.thenAcceptBoth(other, (pr1, pr2) -> {
-			if (pr1.set() != pr2.set()) throw new IllegalStateException(String.format("Melded mismatched sets %s and %s!", pr1.set(), pr2.set()));
+		for (List<ScryfallPrint> pair : melded.values()) {
+			ScryfallPrint pr1 = pair.get(0);
+			for (ScryfallPrint pr2 : pair.subList(1, pair.size())) {
+				if (pr1.set() != pr2.set()) System.err.printf("Melded mismatched sets %s and %s!%n", pr1.set(), pr2.set());
 
-			for (ScryfallFace face : pr1.card().faces()) {
-				if (pr1.card().mainFaces().contains(face)) continue;
-				if (!pr2.card().faces().contains(face)) throw new IllegalStateException(String.format("Meld part %s contains face %s not in meld part %s's faces!", pr1, face, pr2));
+				for (ScryfallFace face : pr1.card().faces()) {
+					if (pr1.card().mainFaces().contains(face)) continue;
+					if (!pr2.card().faces().contains(face)) System.err.printf("Meld part %s contains face %s not in meld part %s's faces!%n", pr1, face, pr2);
+				}
 			}
-		}).handle((nothing, exc) -> {
-			exc.printStackTrace();
-			throw new CompletionException(exc);
-		});
+		}
+
+		gen.meldCards.clear();
 	}
 
+	// Processing takes seconds; the timeout is only there so a stuck load fails rather than hanging, and grows with the
+	// data so slow machines don't trip it.
+	private static final int PROCESS_PARALLELISM = Runtime.getRuntime().availableProcessors();
+	private static final int PROCESS_BATCH_SIZE = 256;
+	private static final long PROCESS_TIMEOUT_MS = 60_000;
+	private static final long PROCESS_TIMEOUT_PER_CARD_US = 1_000;
+
 	@Override
 	public boolean loadData(Path dataDir, DoubleConsumer progress) throws IOException {
-		this.cards.clear();
-		this.prints.clear();
-		this.sets.clear();
-		this.await.clear();
+		// One load at a time. Whatever's current keeps being served until the new generation is finished.
+		final Generation gen = new Generation();
+		synchronized (loadLock) {
+			this.loading.awaitLoaded();
+			this.loading = gen;
+		}
 
-		ScryfallSerde serde = ScryfallSerde.get();
-		System.out.printf("Scryfall: Using %s deserializer to read %s%n", serde.type(), dataFile(dataDir));
+		if (!ScryfallPreferences.get().progressiveLoading) {
+			try {
+				load(gen, dataDir, progress, null);
+				warmUp(gen);
+			} catch (IOException | RuntimeException | Error e) {
+				finish(gen, e);
+				throw e;
+			}
 
-		serde.startReading(dataFile(dataDir));
+			finish(gen, null);
+			return true;
+		}
 
-		serde.readStartSets();
-		while (serde.hasNextSet()) {
-			emi.lib.mtg.scryfall.api.Set set = serde.nextSet();
+		// A first load has nothing else to serve in the meantime, so it's published as soon as its sets are.
+		final boolean first = this.current.sets.isEmpty();
+		CompletableFuture<Void> setsLoaded = new CompletableFuture<>();
+		Runnable publishSets = () -> {
+			if (first && !setsLoaded.isDone()) this.current = gen;
+			setsLoaded.complete(null);
+		};
 
-			if (set.setType == SetType.Token && !HORDE_SETS.contains(set.code.toLowerCase())) {
-				continue;
+		Thread loader = new Thread(() -> {
+			Throwable failure = null;
+			try {
+				load(gen, dataDir, progress, publishSets);
+				publishSets.run();
+				hydrate(gen);
+				warmUp(gen);
+			} catch (Throwable t) {
+				// If sets never loaded, loadData() throws this itself.
+				if (setsLoaded.isDone()) new IOException("Unable to finish loading Scryfall data in the background", t).printStackTrace();
+				failure = t;
+			}
+
+			finish(gen, failure);
+		}, "Scryfall loader");
+		loader.setDaemon(true);
+		loader.start();
+
+		try {
+			CompletableFuture.anyOf(setsLoaded, gen.loaded).get();
+			if (gen.loaded.isCompletedExceptionally()) gen.loaded.get();
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException("Interrupted while loading Scryfall sets");
+		} catch (ExecutionException ee) {
+			throw ee.getCause() instanceof IOException ? (IOException) ee.getCause() : new IOException(ee.getCause());
+		}
+
+		if (first) {
+			System.out.printf("Scryfall: Loaded %d sets; cards will continue loading in the background%n", gen.sets.size());
+		} else {
+			System.out.printf("Scryfall: Loading cards in the background; the previous data will be served until they're done%n");
+		}
+		return true;
+	}
+
+	/**
+	 * Publishes a generation once it's loaded, unless loading failed, and releases anyone waiting on its prints.
+	 */
+	private void finish(Generation gen, Throwable failure) {
+		if (failure == null) {
+			this.current = gen;
+			gen.loaded.complete(null);
+		} else {
+			gen.loaded.completeExceptionally(failure);
+		}
+
+		for (UUID id : printWaiters.keySet()) {
+			CompletableFuture<Card.Print> waiter = printWaiters.remove(id);
+			if (waiter == null) continue;
+
+			if (failure != null) {
+				waiter.completeExceptionally(failure);
+			} else {
+				waiter.complete(print(id));
+			}
+		}
+	}
+
+	/**
+	 * Processes every card still waiting in a mapped data file, so that the generations serving it drop their mappings.
+	 * Mappings are otherwise released when their generation is, or once every card has been processed, and only then
+	 * after the store is garbage collected. Only needed where a mapped file can't be replaced, i.e. on Windows.
+	 */
+	private void releaseMappings() {
+		materializeAll(this.current);
+		materializeAll(this.loading);
+	}
+
+	/**
+	 * In a progressive load, processes whatever's left of a mapped data file in small batches, so on-demand lookups can
+	 * slip in between them.
+	 */
+	private void hydrate(Generation gen) {
+		Mapped.Store store = gen.store;
+		if (store == null) return;
+
+		int[] records = store.records();
+		for (int i = 0; i < records.length; i += PROCESS_BATCH_SIZE) {
+			materialize(gen, Arrays.copyOfRange(records, i, Math.min(records.length, i + PROCESS_BATCH_SIZE)));
+		}
+
+		materializeAll(gen);
+	}
+
+	/**
+	 * If the user asked for it, computes every card's derived attributes in parallel, so the first search over every card
+	 * doesn't have to. Cards in a mapped data file which hasn't been fully materialized are left alone, since warming
+	 * them up would mean processing every one of them. A failure here isn't fatal; whatever's left is computed on first
+	 * use, as usual.
+	 */
+	private void warmUp(Generation gen) {
+		if (!ScryfallPreferences.get().warmUp || gen.store != null) return;
+
+		long start = System.nanoTime();
+		try (BatchProcessor<ScryfallCard> processor = new BatchProcessor<>(PROCESS_PARALLELISM, PROCESS_BATCH_SIZE, ScryfallCard::warmUp)) {
+			for (ScryfallCard card : gen.cards.values()) processor.submit(card);
+			processor.await(PROCESS_TIMEOUT_MS + (long) gen.cards.size() * PROCESS_TIMEOUT_PER_CARD_US / 1000, TimeUnit.MILLISECONDS);
+		} catch (IOException ioe) {
+			new IOException("Unable to warm up every card. The rest will be warmed up as they're used.", ioe).printStackTrace();
+			return;
+		}
+
+		System.out.printf("Scryfall: Warmed up %d cards in %d ms%n", gen.cards.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	/**
+	 * Loads every card into the given generation, or in the case of a mapped data file, every set.
+	 *
+	 * @param setsLoaded Run once every set has been loaded, before any cards are. May be null.
+	 */
+	private void load(Generation gen, Path dataDir, DoubleConsumer progress, Runnable setsLoaded) throws IOException {
+		ScryfallSerde.Implementation serde = ScryfallPreferences.get().serde;
+		DeltaStore delta = DeltaStore.load(dataDir, serde);
+
+		if (serde == ScryfallSerde.Implementation.Mapped) {
+			// Segments can't be mapped alongside the base file, so fold them into it first.
+			if (delta != null && delta.hasSegments() && delta.loadIndex()) delta = delta.compact(dataFile(dataDir), this::releaseMappings);
+			if (delta == null || !delta.hasSegments()) {
+				loadMapped(gen, dataDir, progress);
+				return;
 			}
+			System.err.printf("Scryfall: Unable to compact delta segments; loading every card instead of mapping %s.%n", dataFile(dataDir));
+		}
 
-			sets.put(set.code, new ScryfallSet(set));
+		// If nothing has changed since the last load, we can skip processing entirely.
+		long snapshotKey = Snapshot.key(dataFile(dataDir), delta);
+		try {
+			if (Snapshot.read(dataDir, snapshotKey, progress, setsLoaded, gen.sets, gen.cards, gen.prints, gen.cardNameIndex)) {
+				System.out.printf("Scryfall: Restored %d cards and %d prints from snapshot%n", gen.cards.size(), gen.prints.size());
+				gen.freeze();
+				return;
+			}
+		} catch (IOException ioe) {
+			new IOException("Unable to read Scryfall snapshot. Loading the data file instead.", ioe).printStackTrace();
+			gen.clear();
 		}
-		serde.readEndSets();
 
-		ExecutorService processor = Executors.newCachedThreadPool();
+		System.out.printf("Scryfall: Using %s deserializer to read %s%s%n", serde, dataFile(dataDir), delta != null ? " and delta segments" : "");
 
-		final double printCount = serde.readStartCards();
+		final AtomicInteger printCount = new AtomicInteger();
 		final AtomicInteger processedCount = new AtomicInteger();
-		while (serde.hasNextCard()) {
-			emi.lib.mtg.scryfall.api.Card card = serde.nextCard();
 
-			if (card.layout == CardLayout.Token || card.layout == CardLayout.DoubleFacedToken) {
-				continue;
+		// Card counts are only read once every set has been.
+		IntConsumer counts = count -> {
+			printCount.addAndGet(count);
+			if (setsLoaded != null) setsLoaded.run();
+		};
+
+		Consumer<emi.lib.mtg.scryfall.api.Set> setConsumer = set -> {
+			if (set.setType == SetType.Token && !HORDE_SETS.contains(set.code.toLowerCase())) {
+				return;
 			}
 
-			processor.submit(() -> {
-				try {
-					process(card);
-				} catch (Exception e) {
-					throw new RuntimeException(String.format("While processing %s (%s) %s:%n", card.name, card.set, card.collectorNumber), e);
-				}
+			gen.sets.put(set.code, new ScryfallSet(set));
+		};
 
-				if (progress != null) {
-					int x = processedCount.incrementAndGet();
-					if ((x & 0x1FF) == 0) {
-						progress.accept(x / printCount);
-					}
+		try (BatchProcessor<emi.lib.mtg.scryfall.api.Card> processor = new BatchProcessor<>(PROCESS_PARALLELISM, PROCESS_BATCH_SIZE, card -> {
+			try {
+				process(gen, card);
+			} catch (Exception e) {
+				throw new RuntimeException(String.format("While processing %s (%s) %s:%n", card.name, card.set, card.collectorNumber), e);
+			}
+
+			if (progress != null) {
+				int x = processedCount.incrementAndGet();
+				if ((x & 0x1FF) == 0) {
+					progress.accept(x / (double) printCount.get());
 				}
-			});
+			}
+		})) {
+			ScryfallSerde.CardConsumer cardConsumer = card -> {
+				if (card.layout == CardLayout.Token || card.layout == CardLayout.DoubleFacedToken) {
+					return;
+				}
+
+				processor.submit(card);
+			};
+
+			if (delta != null) {
+				delta.read(dataFile(dataDir), counts, setConsumer, cardConsumer, true);
+			} else {
+				DeltaStore.read(serde, dataFile(dataDir), counts, setConsumer, cardConsumer, true);
+			}
+
+			try {
+				processor.await(PROCESS_TIMEOUT_MS + (long) printCount.get() * PROCESS_TIMEOUT_PER_CARD_US / 1000, TimeUnit.MILLISECONDS);
+			} catch (IOException ioe) {
+				throw new IOException("Unable to process all cards", ioe);
+			}
 		}
-		serde.readEndCards();
 
-		serde.endReading();
+		linkMelds(gen);
 
-		processor.shutdown();
 		try {
-			if (!processor.awaitTermination(1, TimeUnit.MINUTES)) {
-				throw new IOException("Unable to process all cards!");
+			Snapshot.write(dataDir, snapshotKey, gen.sets, gen.cards, gen.cardNameIndex);
+		} catch (IOException ioe) {
+			new IOException("Unable to write Scryfall snapshot. The next load will process the data file again.", ioe).printStackTrace();
+		}
+
+		gen.freeze();
+	}
+
+	/**
+	 * Maps the data file and reads only its sets. Cards are processed by materialize() as they're asked for.
+	 */
+	private void loadMapped(Generation gen, Path dataDir, DoubleConsumer progress) throws IOException {
+		Mapped.Store store = Mapped.Store.open(dataFile(dataDir));
+
+		for (emi.lib.mtg.scryfall.api.Set setJson : store.sets()) {
+			if (setJson.setType == SetType.Token && !HORDE_SETS.contains(setJson.code.toLowerCase())) continue;
+
+			ScryfallSet set = new ScryfallSet(setJson);
+			set.materialize = () -> materializeSet(gen, set);
+			gen.sets.put(setJson.code, set);
+		}
+
+		gen.store = store;
+		System.out.printf("Scryfall: Mapped %d cards from %s; each will be processed when it's first used%n", store.size(), dataFile(dataDir));
+		if (progress != null) progress.accept(1.0);
+	}
+
+	/**
+	 * Processes the cards at the given record offsets in the mapped data file, if they haven't been already. Every other
+	 * print of the same cards, and every part of a meld, is processed along with them, so the cards come out exactly as
+	 * loadData() would have built them.
+	 */
+	private void materialize(Generation gen, int... records) {
+		synchronized (gen) {
+			Mapped.Store store = gen.store;
+			if (store == null) return;
+
+			Deque<Integer> queue = new ArrayDeque<>();
+			for (int record : records) if (record >= 0) queue.add(record);
+
+			List<emi.lib.mtg.scryfall.api.Card> pending = new ArrayList<>();
+			try {
+				while (!queue.isEmpty()) {
+					int record = queue.removeFirst();
+					if (!gen.materialized.add(record)) continue;
+
+					emi.lib.mtg.scryfall.api.Card card = store.card(record);
+					if (card.layout == CardLayout.Token || card.layout == CardLayout.DoubleFacedToken) continue;
+					pending.add(card);
+
+					for (int other : store.recordsByName(card.name)) queue.add(other);
+					if (card.cardFaces != null) {
+						for (emi.lib.mtg.scryfall.api.Card.Face face : card.cardFaces) {
+							for (int other : store.recordsByName(face.name)) queue.add(other);
+						}
+					}
+					if (card.layout == CardLayout.Meld && card.allParts != null) {
+						for (emi.lib.mtg.scryfall.api.Card.Part part : card.allParts) {
+							int other = store.record(part.id);
+							if (other >= 0) queue.add(other);
+						}
+					}
+				}
+			} catch (IOException ioe) {
+				throw new UncheckedIOException("Unable to read mapped Scryfall data", ioe);
+			}
+
+			for (emi.lib.mtg.scryfall.api.Card card : pending) {
+				try {
+					process(gen, card);
+				} catch (Exception e) {
+					throw new RuntimeException(String.format("While processing %s (%s) %s:%n", card.name, card.set, card.collectorNumber), e);
+				}
+			}
+
+			linkMelds(gen);
+
+			// Every print of these cards has been processed now, so they won't need their JSON again.
+			for (emi.lib.mtg.scryfall.api.Card card : pending) {
+				ScryfallPrint print = gen.prints.get(card.id);
+				if (print != null) print.card().compact();
 			}
-		} catch (InterruptedException e) {
-			throw new IOException("Interrupted while processing cards", e);
 		}
+	}
 
-		return true;
+	/**
+	 * Processes every card in one set of the mapped data file which hasn't been already. The generation's store is looked
+	 * up each time rather than captured, so sets don't keep a released mapping alive.
+	 */
+	private void materializeSet(Generation gen, ScryfallSet set) {
+		Mapped.Store store = gen.store;
+		if (store != null) materialize(gen, store.recordsBySet(set.code()));
+		set.materialize = null;
+	}
+
+	/**
+	 * Processes every card in the mapped data file which hasn't been already, since the caller wants all of them.
+	 */
+	private void materializeAll(Generation gen) {
+		Mapped.Store store = gen.store;
+		if (store == null) return;
+
+		synchronized (gen) {
+			if (gen.store == null) return;
+			materialize(gen, store.records());
+			gen.freeze();
+			gen.store = null;
+		}
 	}
 
 	public static void main(String[] args) throws IOException {
@@ -601,7 +1208,7 @@ public class ScryfallDataSource implements DataSource, Updateable {
 		System.gc();
 		System.gc();
 
-		System.out.printf("New: %d sets, %d cards, %d prints%n", dataSource.sets.size(), dataSource.cards.size(), dataSource.prints.size());
+		System.out.printf("New: %d sets, %d cards, %d prints%n", dataSource.current.sets.size(), dataSource.current.cards.size(), dataSource.current.prints.size());
 
 		System.out.println("Checking cards for bad data...");
 
@@ -6,6 +6,7 @@ import emi.lib.mtg.enums.Color;
 import emi.lib.mtg.TypeLine;
 import emi.lib.mtg.game.ability.Abilities;
 
+import java.io.IOException;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -14,18 +15,118 @@ import static emi.lib.mtg.scryfall.Util.orEmpty;
 
 class ScryfallFace implements Card.Face {
 
-	private final emi.lib.mtg.scryfall.api.Card cardJson;
-	final emi.lib.mtg.scryfall.api.Card.Face faceJson; // Currently used only for W5 in ScryfallDataSource...
-
-	private Mana.Value manaCost;
-	private TypeLine typeLine;
-	private Abilities abilities;
-
-	private Color.Combination color, colorIndicator, colorIdentity;
+	/**
+	 * The JSON this face was built from. Everything the face serves is copied out of it up front; it's only kept for
+	 * W5 in ScryfallDataSource and for the snapshot, until compact() lets go of it.
+	 */
+	emi.lib.mtg.scryfall.api.Card cardJson;
+	emi.lib.mtg.scryfall.api.Card.Face faceJson;
+
+	private final UUID oracleId;
+	private final String name, rules, typeText, manaCostText;
+	private final String printedPower, printedToughness, printedLoyalty, printedDefense, handModifier, lifeModifier;
+	private final double manaValue;
+	private final Color.Combination color, colorIndicator;
+
+	/**
+	 * The code of the set this face was first built from. It's only used in error messages; faces are shared by every
+	 * print of a card, so it isn't part of equality.
+	 */
+	private final String setCode;
+
+	// Computed on first use, or all at once by warmUp(). Racing threads may each compute one, but they're equal, and
+	// volatile makes sure nobody sees one half-built.
+	private volatile Mana.Value manaCost;
+	private volatile TypeLine typeLine;
+	private volatile Abilities abilities;
+	private volatile Color.Combination colorIdentity;
 
 	ScryfallFace(emi.lib.mtg.scryfall.api.Card cardJson, emi.lib.mtg.scryfall.api.Card.Face faceJson) {
 		this.cardJson = cardJson;
 		this.faceJson = faceJson;
+
+		// Have to check for faceJson here; meld backsides are still separate Card objects.
+		boolean face = faceJson != null;
+		this.oracleId = face && faceJson.oracleId != null ? faceJson.oracleId : cardJson.oracleId;
+		this.name = or(face ? faceJson.name : cardJson.name, "");
+		this.rules = or(face ? faceJson.oracleText : cardJson.oracleText, "");
+		this.typeText = face && faceJson.typeLine != null ? faceJson.typeLine : cardJson.typeLine;
+		this.manaCostText = or(face ? faceJson.manaCost : cardJson.manaCost, "");
+		this.printedPower = or(face ? faceJson.power : cardJson.power, "");
+		this.printedToughness = or(face ? faceJson.toughness : cardJson.toughness, "");
+		this.printedLoyalty = or(face ? faceJson.loyalty : cardJson.loyalty, "");
+		this.printedDefense = or(face ? faceJson.defense : cardJson.defense, "");
+		this.handModifier = or(cardJson.handModifier, "");
+		this.lifeModifier = or(cardJson.lifeModifier, "");
+		this.manaValue = cardJson.cmc != null ? cardJson.cmc : 0.0;
+
+		this.colorIndicator = Util.mapColor(orEmpty(face && faceJson.colorIndicator != null ? faceJson.colorIndicator : cardJson.colorIndicator));
+		this.color = Util.mapColor(orEmpty(face && faceJson.colors != null ? faceJson.colors : cardJson.colors))
+				.plus(colorIndicator);
+		this.setCode = cardJson.set != null ? cardJson.set.intern() : null;
+	}
+
+	/**
+	 * Restores a face written by write(). There's no JSON to go with it.
+	 */
+	ScryfallFace(Snapshot.Input in) throws IOException {
+		this.cardJson = null;
+		this.faceJson = null;
+
+		this.oracleId = in.readUuid();
+		this.name = in.readString();
+		this.rules = in.readString();
+		this.typeText = in.readString();
+		this.manaCostText = in.readString();
+		this.printedPower = in.readString();
+		this.printedToughness = in.readString();
+		this.printedLoyalty = in.readString();
+		this.printedDefense = in.readString();
+		this.handModifier = in.readString();
+		this.lifeModifier = in.readString();
+		this.manaValue = in.readDouble();
+		this.colorIndicator = in.readEnum(Color.Combination.class);
+		this.color = in.readEnum(Color.Combination.class);
+		this.setCode = in.readString();
+	}
+
+	/**
+	 * Writes everything this face serves, in the order the constructor above reads it.
+	 */
+	void write(Snapshot.Output out) throws IOException {
+		out.writeUuid(oracleId);
+		out.writeString(name);
+		out.writeString(rules);
+		out.writeString(typeText);
+		out.writeString(manaCostText);
+		out.writeString(printedPower);
+		out.writeString(printedToughness);
+		out.writeString(printedLoyalty);
+		out.writeString(printedDefense);
+		out.writeString(handModifier);
+		out.writeString(lifeModifier);
+		out.writeDouble(manaValue);
+		out.writeEnum(colorIndicator);
+		out.writeEnum(color);
+		out.writeString(setCode);
+	}
+
+	/**
+	 * Lets go of the JSON this face was built from, once nothing else needs it.
+	 */
+	void compact() {
+		this.cardJson = null;
+		this.faceJson = null;
+	}
+
+	/**
+	 * Computes everything this face otherwise computes on first use.
+	 */
+	void warmUp() {
+		manaCost();
+		type();
+		abilities();
+		colorIdentity();
 	}
 
 	@Override
@@ -34,7 +135,7 @@ class ScryfallFace implements Card.Face {
 	}
 
 	private void initColor() {
-		if (color != null && colorIndicator != null && colorIdentity != null) {
+		if (colorIdentity != null) {
 			return;
 		}
 
@@ -65,11 +166,7 @@ class ScryfallFace implements Card.Face {
 		}
 		*/
 
-		// Have to check for faceJson here; meld backsides are still separate Card objects.
-		colorIndicator = Util.mapColor(orEmpty(faceJson != null && faceJson.colorIndicator != null ? faceJson.colorIndicator : cardJson.colorIndicator));
-		color = Util.mapColor(orEmpty(faceJson != null && faceJson.colors != null ? faceJson.colors : cardJson.colors))
-				.plus(colorIndicator);
-		colorIdentity = Mana.Symbol.symbolsIn(faceJson != null ? faceJson.oracleText : cardJson.oracleText)
+		colorIdentity = Mana.Symbol.symbolsIn(rules)
 				.map(Mana.Symbol::color)
 				.collect(Color.Combination.COMBO_COLLECTOR)
 				.plus(color)
@@ -78,17 +175,16 @@ class ScryfallFace implements Card.Face {
 
 	@Override
 	public String name() {
-		return or(faceJson != null ? faceJson.name : cardJson.name, "");
+		return name;
 	}
 
 	@Override
 	public Mana.Value manaCost() {
 		if (manaCost == null) {
-			final String source = or(faceJson != null ? faceJson.manaCost : cardJson.manaCost, "");
 			try {
-				manaCost = Mana.Value.parse(source);
+				manaCost = Util.manaCost(manaCostText);
 			} catch (IllegalArgumentException iae) {
-				throw new IllegalArgumentException("When parsing mana cost of " + cardJson.name + " in set " + cardJson.setName);
+				throw new IllegalArgumentException("When parsing mana cost of " + name + " in set " + setCode, iae);
 			}
 		}
 
@@ -97,18 +193,16 @@ class ScryfallFace implements Card.Face {
 
 	@Override
 	public double manaValue() {
-		return cardJson.cmc != null ? cardJson.cmc : 0.0;
+		return manaValue;
 	}
 
 	@Override
 	public Color.Combination colorIndicator() {
-		initColor();
 		return colorIndicator;
 	}
 
 	@Override
 	public Color.Combination color() {
-		initColor();
 		return color;
 	}
 
@@ -121,13 +215,7 @@ class ScryfallFace implements Card.Face {
 	@Override
 	public TypeLine type() {
 		if (typeLine == null) {
-			String typeLine = cardJson.typeLine;
-
-			if (faceJson != null && faceJson.typeLine != null) {
-				typeLine = faceJson.typeLine;
-			}
-
-			this.typeLine = TypeLine.Basic.parse(typeLine);
+			this.typeLine = Util.typeLine(typeText);
 		}
 
 		return typeLine;
@@ -135,37 +223,37 @@ class ScryfallFace implements Card.Face {
 
 	@Override
 	public String rules() {
-		return or(faceJson != null ? faceJson.oracleText : cardJson.oracleText, "");
+		return rules;
 	}
 
 	@Override
 	public String printedPower() {
-		return or(faceJson != null ? faceJson.power : cardJson.power, "");
+		return printedPower;
 	}
 
 	@Override
 	public String printedToughness() {
-		return or(faceJson != null ? faceJson.toughness : cardJson.toughness, "");
+		return printedToughness;
 	}
 
 	@Override
 	public String printedLoyalty() {
-		return or(faceJson != null ? faceJson.loyalty : cardJson.loyalty, "");
+		return printedLoyalty;
 	}
 
 	@Override
 	public String printedDefense() {
-		return or(faceJson != null ? faceJson.defense : cardJson.defense, "");
+		return printedDefense;
 	}
 
 	@Override
 	public String handModifier() {
-		return or(cardJson.handModifier, "");
+		return handModifier;
 	}
 
 	@Override
 	public String lifeModifier() {
-		return or(cardJson.lifeModifier, "");
+		return lifeModifier;
 	}
 
 	@Override
@@ -179,11 +267,7 @@ class ScryfallFace implements Card.Face {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(
-				faceJson == null || faceJson.oracleId == null ? cardJson.oracleId : faceJson.oracleId,
-				faceJson == null || faceJson.name == null ? cardJson.name : faceJson.name,
-				faceJson == null || faceJson.oracleText == null ? cardJson.oracleText : faceJson.oracleText
-		);
+		return Objects.hash(oracleId, name, rules);
 	}
 
 	@Override
@@ -191,9 +275,6 @@ class ScryfallFace implements Card.Face {
 		if (!(obj instanceof ScryfallFace)) return false;
 		ScryfallFace other = (ScryfallFace) obj;
 
-		return Objects.equals(
-				faceJson == null || faceJson.oracleId == null ? cardJson.oracleId : faceJson.oracleId,
-				other.faceJson == null || other.faceJson.oracleId == null ? other.cardJson.oracleId : other.faceJson.oracleId
-		) && name().equals(other.name()) && rules().equals(other.rules());
+		return Objects.equals(oracleId, other.oracleId) && name.equals(other.name) && rules.equals(other.rules);
 	}
 }
@@ -5,11 +5,13 @@ import emi.lib.mtg.ImageSource;
 import emi.lib.mtg.enums.StandardFrame;
 import emi.lib.mtg.img.MtgAwtImageUtils;
 import emi.lib.mtg.scryfall.api.ScryfallApi;
+import emi.lib.mtg.scryfall.api.ScryfallUri;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
 
@@ -20,33 +22,45 @@ public class ScryfallImageSource implements ImageSource {
 		return 50;
 	}
 
-	private URL url(emi.lib.mtg.scryfall.api.Card cardJson, emi.lib.mtg.scryfall.api.Card.Face faceJson, String imageUri) {
+	/**
+	 * Picks out the image of the given size for a printed face. Prints and faces keep only these, rather than the JSON.
+	 *
+	 * @return The image's URI, or null if Scryfall doesn't have one.
+	 */
+	static ScryfallUri imageUri(emi.lib.mtg.scryfall.api.Card cardJson, emi.lib.mtg.scryfall.api.Card.Face faceJson, String imageUri) {
+		Map<String, ScryfallUri> uris;
 		switch (cardJson.layout) {
 			case Transform:
 			case ModalDFC:
 			case ReversibleCard:
-				assert faceJson != null && faceJson.imageUris != null;
-				return faceJson.imageUris.get(imageUri);
+				uris = faceJson != null ? faceJson.imageUris : null;
+				break;
 			default:
-				assert cardJson.imageUris != null;
-				return cardJson.imageUris.get(imageUri);
+				uris = cardJson.imageUris;
+				break;
 		}
+
+		return uris == null ? null : uris.get(imageUri);
+	}
+
+	private URL url(ScryfallUri uri) throws IOException {
+		return uri == null ? null : uri.toURL();
 	}
 
-	private URL smallCardUrl(Card.Print print) {
+	private URL smallCardUrl(Card.Print print) throws IOException {
 		if (print instanceof ScryfallPrint) {
 			ScryfallPrint scp = (ScryfallPrint) print;
 			Set<ScryfallPrintedFace> printedFaces = scp.card().front() != null ? scp.faces(scp.card().front()) : null;
-			return url(scp.cardJson, printedFaces == null || printedFaces.isEmpty() ? null : printedFaces.iterator().next().faceJson, "normal");
+			return url(printedFaces == null || printedFaces.isEmpty() ? scp.image : printedFaces.iterator().next().normalImage);
 		} else {
 			return null; // TODO: We may be able to find an image from Scryfall anyway.
 		}
 	}
 
-	private URL largeFaceUrl(Card.Print.Face printedFace) {
+	private URL largeFaceUrl(Card.Print.Face printedFace) throws IOException {
 		if (printedFace instanceof ScryfallPrintedFace) {
 			ScryfallPrintedFace spf = (ScryfallPrintedFace) printedFace;
-			return url(spf.cardJson, spf.faceJson, "large");
+			return url(spf.largeImage);
 		} else {
 			return null; // TODO: We may be able to find an image from Scryfall anyway.
 		}
@@ -1,5 +1,6 @@
 package emi.lib.mtg.scryfall;
 
+import emi.lib.mtg.scryfall.serde.Compression;
 import emi.lib.mtg.scryfall.serde.ScryfallSerde;
 import emi.mtg.deckbuilder.controller.Context;
 import emi.mtg.deckbuilder.controller.Tags;
@@ -32,9 +33,21 @@ public class ScryfallPreferences implements Preferences.Plugin {
 	@Preference(value="Update Interval (days)", min=1.0, max=365.0, tooltip="The number of days before data is considered old and an update is proposed.")
 	public double updateInterval = 7.0;
 
-	@Preference(value="Disk Encoding", buttonBar=true, tooltip="JSON is human-readable; MessagePack is somewhat faster.\nRequires a restart, and possibly a re-download.")
+	@Preference(value="Disk Encoding", buttonBar=true, tooltip="JSON is human-readable; MessagePack is somewhat faster.\nMapped is larger on disk, but only loads cards as they're used, and shares memory between running copies.\nRequires a restart, and possibly a re-download.")
 	public ScryfallSerde.Implementation serde = ScryfallSerde.Implementation.Json;
 
+	@Preference(value="Disk Compression", tooltip="Gzip is smallest; Fast and ParallelGzip write more quickly; Lz4 loads fastest but is largest.\nApplies to files written after the change; existing files are still readable.")
+	public Compression compression = Compression.Gzip;
+
+	@Preference(value="Progressive Loading", tooltip="Start up as soon as sets are loaded, and keep loading cards in the background.\nCards which haven't loaded yet won't turn up in searches until loading finishes.")
+	public boolean progressiveLoading = false;
+
+	@Preference(value="Warm Up Cards", tooltip="Once cards are loaded, work out their mana costs, types and abilities on every core at once.\nLoading takes a little longer, but the first search or sort doesn't stall.\nCards in a Mapped file are skipped until they've all been used.")
+	public boolean warmUp = false;
+
+	@Preference(value="Incremental Updates", tooltip="Save only the cards which changed since the last update, rather than rewriting the whole database.\nChanges are merged back into the database every few updates.")
+	public boolean incrementalUpdates = true;
+
 	@Preference(value="Function Tags", tooltip="Comma-separated list of function tags which should be imported from Scryfall.")
 	public String functionTags = "removal, sweeper, draw, ramp, mana dork, mana rock";
 
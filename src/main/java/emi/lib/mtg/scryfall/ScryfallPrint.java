@@ -2,7 +2,10 @@ package emi.lib.mtg.scryfall;
 
 import emi.lib.mtg.Card;
 import emi.lib.mtg.enums.Rarity;
+import emi.lib.mtg.scryfall.api.ScryfallUri;
+import emi.lib.mtg.scryfall.util.ArraySet;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -117,10 +120,22 @@ class ScryfallPrint implements Card.Print {
 
 	private final ScryfallSet set;
 	private final ScryfallCard card;
-	final emi.lib.mtg.scryfall.api.Card cardJson;
+
+	/**
+	 * The JSON this print was built from. Everything the print serves is copied out of it up front; it's only kept for
+	 * the snapshot, until compact() lets go of it.
+	 */
+	emi.lib.mtg.scryfall.api.Card cardJson;
+
+	private final UUID id;
+	private final String collectorNumber;
+	private final Rarity rarity;
+	private final Integer multiverseId, mtgoCatalogId;
+	private final boolean promo;
+	private final LocalDate releaseDate;
+	final ScryfallUri image;
 
 	private Set<ScryfallPrintedFace> faces, mainFaces;
-	private final Map<ScryfallFace, Map<ScryfallPrintedFace, ScryfallPrintedFace>> facesDict;
 
 	private int variation;
 
@@ -129,27 +144,92 @@ class ScryfallPrint implements Card.Print {
 		this.card = card;
 		this.cardJson = cardJson;
 
+		this.id = cardJson.id;
+		this.collectorNumber = cardJson.collectorNumber;
+		this.rarity = Util.mapRarity(cardJson);
+		this.multiverseId = cardJson.multiverseIds == null || cardJson.multiverseIds.isEmpty() ? null : cardJson.multiverseIds.iterator().next();
+		this.mtgoCatalogId = cardJson.mtgoId;
+		this.promo = cardJson.promo;
+		this.releaseDate = cardJson.releasedAt;
+		this.image = ScryfallImageSource.imageUri(cardJson, null, "normal");
+
+		this.faces = Collections.emptySet();
+		this.mainFaces = Collections.emptySet();
+
+		this.variation = -1;
+	}
+
+	/**
+	 * Restores a print written by write(), without any of its faces.
+	 */
+	ScryfallPrint(ScryfallSet set, ScryfallCard card, Snapshot.Input in) throws IOException {
+		this.set = set;
+		this.card = card;
+		this.cardJson = null;
+
+		this.id = in.readUuid();
+		this.collectorNumber = in.readString();
+		this.rarity = in.readEnum(Rarity.class);
+		this.multiverseId = in.readBoolean() ? in.readInt() : null;
+		this.mtgoCatalogId = in.readBoolean() ? in.readInt() : null;
+		this.promo = in.readBoolean();
+		this.releaseDate = in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+		this.image = in.readUri();
+
 		this.faces = Collections.emptySet();
 		this.mainFaces = Collections.emptySet();
-		this.facesDict = new HashMap<>();
 
 		this.variation = -1;
 	}
 
+	/**
+	 * Writes everything this print serves besides its set, card and faces, in the order the constructor above reads it.
+	 */
+	void write(Snapshot.Output out) throws IOException {
+		out.writeUuid(id);
+		out.writeString(collectorNumber);
+		out.writeEnum(rarity);
+		out.writeBoolean(multiverseId != null);
+		if (multiverseId != null) out.writeInt(multiverseId);
+		out.writeBoolean(mtgoCatalogId != null);
+		if (mtgoCatalogId != null) out.writeInt(mtgoCatalogId);
+		out.writeBoolean(promo);
+		out.writeBoolean(releaseDate != null);
+		if (releaseDate != null) out.writeLong(releaseDate.toEpochDay());
+		out.writeUri(image);
+	}
+
 	ScryfallPrintedFace addFace(ScryfallFace face, boolean back, emi.lib.mtg.enums.StandardFrame frame, emi.lib.mtg.scryfall.api.Card jsonCard, emi.lib.mtg.scryfall.api.Card.Face faceJson) {
-		ScryfallPrintedFace printedFace = new ScryfallPrintedFace(this, face, back, frame, jsonCard, faceJson);
-		if (facesDict.containsKey(face) && facesDict.get(face).containsKey(printedFace)) return facesDict.get(face).get(printedFace);
+		return addFace(new ScryfallPrintedFace(this, face, back, frame, jsonCard, faceJson));
+	}
 
-		faces = Util.addElem(faces, printedFace, LinkedHashSet::new);
+	ScryfallPrintedFace addFace(ScryfallPrintedFace printedFace) {
+		ScryfallFace face = printedFace.face();
 
-		if (card.mainFaces().contains(face)) {
-			mainFaces = Util.addElem(mainFaces, printedFace, LinkedHashSet::new);
+		synchronized (card) {
+			// Prints have one or two faces; scanning them beats keeping a map per face.
+			for (ScryfallPrintedFace existing : faces) {
+				if (existing.face().equals(face) && existing.equals(printedFace)) return existing;
+			}
+
+			faces = Util.addElem(faces, printedFace, ArraySet::new);
+
+			if (card.mainFace(face)) {
+				mainFaces = Util.addElem(mainFaces, printedFace, ArraySet::new);
+			}
 		}
 
-		facesDict.computeIfAbsent(face, f -> new LinkedHashMap<>()).put(printedFace, printedFace);
 		return printedFace;
 	}
 
+	/**
+	 * Lets go of the JSON this print and its faces were built from, once nothing else needs it.
+	 */
+	void compact() {
+		this.cardJson = null;
+		faces.forEach(ScryfallPrintedFace::compact);
+	}
+
 	@Override
 	public ScryfallCard card() {
 		return card;
@@ -157,18 +237,32 @@ class ScryfallPrint implements Card.Print {
 
 	@Override
 	public Set<ScryfallPrintedFace> faces() {
-		return faces;
+		if (card.compacted()) return faces;
+
+		synchronized (card) {
+			return new ArraySet<>(faces);
+		}
 	}
 
 	@Override
 	public Set<ScryfallPrintedFace> mainFaces() {
-		return mainFaces;
+		if (card.compacted()) return mainFaces;
+
+		synchronized (card) {
+			return new ArraySet<>(mainFaces);
+		}
 	}
 
 	@Override
 	public Set<ScryfallPrintedFace> faces(Card.Face face) {
 		if (!(face instanceof ScryfallFace)) throw new IllegalArgumentException(String.format("%s is not a face of %s!", face, card));
-		return facesDict.get(face).keySet();
+
+		Set<ScryfallPrintedFace> matching = Collections.emptySet();
+		for (ScryfallPrintedFace printedFace : faces()) {
+			if (printedFace.face().equals(face)) matching = Util.addElem(matching, printedFace, ArraySet::new);
+		}
+
+		return matching;
 	}
 
 	@Override
@@ -178,56 +272,55 @@ class ScryfallPrint implements Card.Print {
 
 	@Override
 	public Rarity rarity() {
-		return Util.mapRarity(cardJson);
+		return rarity;
 	}
 
 	@Override
 	public Integer multiverseId() {
-		return cardJson.multiverseIds == null || cardJson.multiverseIds.isEmpty() ? null : cardJson.multiverseIds.iterator().next();
+		return multiverseId;
 	}
 
 	@Override
 	public int variation() {
-		if (variation < 0) {
-			Iterator<String> cns = card().prints().stream()
-					.filter(p -> p.set == set)
-					.map(Card.Print::collectorNumber)
-					.sorted(COLLECTOR_NUMBER_COMPARATOR)
-					.iterator();
-
-			for (int i = 1; cns.hasNext(); ++i) {
-				if (Objects.equals(cns.next(), collectorNumber())) {
-					variation = i;
-					break;
-				}
-			}
-
-			if (variation < 0) {
-				variation = 1;
+		if (variation > 0) return variation;
+
+		int variation = 1;
+		Iterator<String> cns = card().prints().stream()
+				.filter(p -> p.set == set)
+				.map(Card.Print::collectorNumber)
+				.sorted(COLLECTOR_NUMBER_COMPARATOR)
+				.iterator();
+
+		for (int i = 1; cns.hasNext(); ++i) {
+			if (Objects.equals(cns.next(), collectorNumber())) {
+				variation = i;
+				break;
 			}
 		}
 
+		// Until the card is compacted, more of its prints may be on the way, so don't hang on to the answer.
+		if (card.compacted()) this.variation = variation;
 		return variation;
 	}
 
 	@Override
 	public String collectorNumber() {
-		return cardJson.collectorNumber;
+		return collectorNumber;
 	}
 
 	@Override
 	public Integer mtgoCatalogId() {
-		return cardJson.mtgoId;
+		return mtgoCatalogId;
 	}
 
 	@Override
 	public boolean promo() {
-		return cardJson.promo;
+		return promo;
 	}
 
 	@Override
 	public LocalDate releaseDate() {
-		return cardJson.releasedAt;
+		return releaseDate;
 	}
 
 	@Override
@@ -237,17 +330,17 @@ class ScryfallPrint implements Card.Print {
 
 	@Override
 	public UUID id() {
-		return cardJson.id;
+		return id;
 	}
 
 	@Override
 	public int hashCode() {
-		return cardJson.id.hashCode();
+		return id.hashCode();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		return obj instanceof ScryfallPrint && (cardJson.id.equals(((ScryfallPrint) obj).cardJson.id));
+		return obj instanceof ScryfallPrint && (id.equals(((ScryfallPrint) obj).id));
 	}
 
 	@Override
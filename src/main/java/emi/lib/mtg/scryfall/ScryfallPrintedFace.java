@@ -2,8 +2,11 @@ package emi.lib.mtg.scryfall;
 
 import emi.lib.mtg.Card;
 import emi.lib.mtg.enums.StandardFrame;
+import emi.lib.mtg.scryfall.api.ScryfallUri;
 
+import java.io.IOException;
 import java.util.Objects;
+import java.util.UUID;
 
 import static emi.lib.mtg.scryfall.Util.or;
 
@@ -14,8 +17,16 @@ class ScryfallPrintedFace implements Card.Print.Face {
 	private final boolean back;
 	private final StandardFrame frame;
 
-	final emi.lib.mtg.scryfall.api.Card cardJson;
-	final emi.lib.mtg.scryfall.api.Card.Face faceJson;
+	/**
+	 * The JSON this face was built from, kept only for the snapshot until compact() lets go of it. For the back of a
+	 * meld card, this is the meld result rather than the print's own JSON.
+	 */
+	emi.lib.mtg.scryfall.api.Card cardJson;
+	emi.lib.mtg.scryfall.api.Card.Face faceJson;
+
+	private final UUID id;
+	private final String flavor;
+	final ScryfallUri normalImage, largeImage;
 
 	ScryfallPrintedFace(ScryfallPrint print, ScryfallFace face, boolean back, StandardFrame frame, emi.lib.mtg.scryfall.api.Card cardJson, emi.lib.mtg.scryfall.api.Card.Face faceJson) {
 		this.back = back;
@@ -24,6 +35,45 @@ class ScryfallPrintedFace implements Card.Print.Face {
 		this.face = face;
 		this.cardJson = cardJson;
 		this.faceJson = faceJson;
+
+		this.id = cardJson.id;
+		this.flavor = or(faceJson != null ? faceJson.flavorText : cardJson.flavorText, "");
+		this.normalImage = ScryfallImageSource.imageUri(cardJson, faceJson, "normal");
+		this.largeImage = ScryfallImageSource.imageUri(cardJson, faceJson, "large");
+	}
+
+	/**
+	 * Restores a printed face written by write(). There's no JSON to go with it.
+	 */
+	ScryfallPrintedFace(ScryfallPrint print, ScryfallFace face, Snapshot.Input in) throws IOException {
+		this.print = print;
+		this.face = face;
+		this.cardJson = null;
+		this.faceJson = null;
+
+		this.back = in.readBoolean();
+		this.frame = in.readEnum(StandardFrame.class);
+		this.id = in.readUuid();
+		this.flavor = in.readString();
+		this.normalImage = in.readUri();
+		this.largeImage = in.readUri();
+	}
+
+	/**
+	 * Writes everything this face serves besides its print and face, in the order the constructor above reads it.
+	 */
+	void write(Snapshot.Output out) throws IOException {
+		out.writeBoolean(back);
+		out.writeEnum(frame);
+		out.writeUuid(id);
+		out.writeString(flavor);
+		out.writeUri(normalImage);
+		out.writeUri(largeImage);
+	}
+
+	void compact() {
+		this.cardJson = null;
+		this.faceJson = null;
 	}
 
 	@Override
@@ -38,7 +88,7 @@ class ScryfallPrintedFace implements Card.Print.Face {
 
 	@Override
 	public String flavor() {
-		return or(faceJson != null ? faceJson.flavorText : cardJson.flavorText, "");
+		return flavor;
 	}
 
 	@Override
@@ -53,7 +103,7 @@ class ScryfallPrintedFace implements Card.Print.Face {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(cardJson.id, back, frame);
+		return Objects.hash(id, back, frame);
 	}
 
 	@Override
@@ -61,6 +111,6 @@ class ScryfallPrintedFace implements Card.Print.Face {
 		if (!(obj instanceof ScryfallPrintedFace)) return false;
 		ScryfallPrintedFace other = (ScryfallPrintedFace) obj;
 
-		return cardJson.id.equals(other.cardJson.id) && back == other.back && frame == other.frame;
+		return id.equals(other.id) && back == other.back && frame == other.frame;
 	}
 }
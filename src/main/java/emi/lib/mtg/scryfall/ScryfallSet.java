@@ -2,24 +2,41 @@ package emi.lib.mtg.scryfall;
 
 import emi.lib.mtg.Card;
 import emi.lib.mtg.Set;
+import emi.lib.mtg.scryfall.util.FrozenMap;
 import emi.lib.mtg.scryfall.util.MirrorMap;
+import emi.lib.mtg.scryfall.util.UuidMap;
 
 import java.time.LocalDate;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 class ScryfallSet implements Set {
 
-	private final emi.lib.mtg.scryfall.api.Set setJson;
+	final emi.lib.mtg.scryfall.api.Set setJson;
 
-	final MirrorMap<UUID, ScryfallPrint> prints;
-	final Map<String, ScryfallPrint> printsByCn;
+	volatile MirrorMap<UUID, ScryfallPrint> prints;
+	volatile Map<String, ScryfallPrint> printsByCn;
+
+	/**
+	 * For a set in a mapped data file, processes the set's records the first time its prints are asked for. Null once
+	 * it has, or if the set's prints were loaded up front.
+	 */
+	volatile Runnable materialize;
 
 	ScryfallSet(emi.lib.mtg.scryfall.api.Set setJson) {
 		this.setJson = setJson;
-		this.prints = new MirrorMap<>(HashMap::new);
-		this.printsByCn = new HashMap<>();
+		this.prints = new MirrorMap<>(ConcurrentHashMap::new);
+		this.printsByCn = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Replaces this set's print indices with compact read-only copies. No prints may be added afterward.
+	 */
+	void freeze() {
+		final UuidMap<ScryfallPrint> frozen = new UuidMap<>(prints);
+		this.prints = new MirrorMap<>(() -> frozen);
+		this.printsByCn = FrozenMap.copyOf(printsByCn);
 	}
 
 	@Override
@@ -49,19 +66,27 @@ class ScryfallSet implements Set {
 
 	@Override
 	public java.util.Set<? extends Card.Print> prints() {
+		materialize();
 		return prints.valueSet();
 	}
 
 	@Override
 	public Card.Print print(UUID id) {
+		materialize();
 		return prints.get(id);
 	}
 
 	@Override
 	public Card.Print print(String collectorNumber) {
+		materialize();
 		return printsByCn.get(collectorNumber);
 	}
 
+	private void materialize() {
+		Runnable materialize = this.materialize;
+		if (materialize != null) materialize.run();
+	}
+
 	@Override
 	public String toString() {
 		return name() + " (" + code().toUpperCase() + ")";
@@ -55,7 +55,7 @@ public class ScryfallTagSource implements Tags.Provider, Updateable {
 					.filter(p -> "meld_part".equals(p.component))
 					.map(p -> {
 						try {
-							return api.requestJson(p.uri, emi.lib.mtg.scryfall.api.Card.class);
+							return api.requestJson(p.uri.toURL(), emi.lib.mtg.scryfall.api.Card.class);
 						} catch (IOException ioe) {
 							new ExecutionException("While fetching meld part " + p.name, ioe).printStackTrace(); // TODO
 							return null;
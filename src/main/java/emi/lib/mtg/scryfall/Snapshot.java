@@ -0,0 +1,330 @@
+package emi.lib.mtg.scryfall;
+
+import emi.lib.mtg.scryfall.api.ScryfallApi;
+import emi.lib.mtg.scryfall.api.ScryfallUri;
+import emi.lib.mtg.scryfall.serde.Compression;
+import emi.lib.mtg.scryfall.util.CardId;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A copy of the fully linked card graph built by loadData(), so the next start can skip decoding and processing the
+ * data file entirely.
+ *
+ * The snapshot holds each set's JSON, then each card, face, print and printed face as the fields it serves, with faces
+ * referring to each other and printed faces referring to their card's faces by ordinal. Reading it rebuilds the same
+ * objects and links them directly; no API cards are decoded and none of process() runs. It's keyed by the size and
+ * modification time of the data file and the revision of its delta segments, and is ignored if those change or this
+ * library is updated.
+ */
+class Snapshot {
+	private static final int MAGIC = 0x5346534E;
+	private static final int VERSION = 3;
+
+	private static final int FACE = 0, MAIN_FACE = 1, TRANSFORMED_FACE = 2, FLIPPED_FACE = 3;
+
+	private static Path graphFile(Path dataDir) {
+		return dataDir.resolve("scryfall-snapshot.graph");
+	}
+
+	/**
+	 * Touching the data file to mark it up to date changes its key too, so the first load after that processes the data
+	 * file again and writes a new snapshot.
+	 *
+	 * @param dataFile The base data file.
+	 * @param delta The data file's delta store, or null if there isn't one.
+	 * @return A key identifying the current contents of the data file and its delta segments.
+	 * @throws IOException If the data file's attributes can't be read.
+	 */
+	static long key(Path dataFile, DeltaStore delta) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
+
+		long key = attrs.size();
+		key = key * 31 + attrs.lastModifiedTime().toMillis();
+		key = key * 31 + (delta != null ? delta.revision() : -1);
+		return key;
+	}
+
+	/**
+	 * Deletes the snapshot, e.g. because the data it was built from is about to be replaced.
+	 */
+	static void delete(Path dataDir) throws IOException {
+		Files.deleteIfExists(graphFile(dataDir));
+	}
+
+	/**
+	 * Writes a snapshot of a fully loaded data source.
+	 *
+	 * @param dataDir The directory to write the snapshot to.
+	 * @param key The key of the data the graph was built from, as returned by key().
+	 * @throws IOException If the snapshot can't be written, or the graph contains something it can't represent.
+	 */
+	static void write(Path dataDir, long key, Map<String, ScryfallSet> sets, Map<CardId, ScryfallCard> cards, Map<String, ScryfallCard> cardNameIndex) throws IOException {
+		delete(dataDir);
+
+		Map<ScryfallCard, Integer> cardOrdinals = new IdentityHashMap<>();
+
+		Path graph = graphFile(dataDir), graphTmp = graph.resolveSibling(graph.getFileName() + ".tmp");
+		try (Output out = new Output(new BufferedOutputStream(Compression.Lz4.compress(Files.newOutputStream(graphTmp))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(key);
+
+			out.writeInt(sets.size());
+			for (ScryfallSet set : sets.values()) out.writeString(ScryfallApi.GSON.toJson(set.setJson));
+
+			out.writeInt(cards.size());
+			for (Map.Entry<CardId, ScryfallCard> entry : cards.entrySet()) {
+				cardOrdinals.put(entry.getValue(), cardOrdinals.size());
+				writeCard(out, entry.getKey(), entry.getValue());
+			}
+
+			out.writeInt(cardNameIndex.size());
+			for (Map.Entry<String, ScryfallCard> entry : cardNameIndex.entrySet()) {
+				Integer card = cardOrdinals.get(entry.getValue());
+				if (card == null) throw new IOException(String.format("Card name index refers to %s, which isn't in the card map", entry.getKey()));
+				out.writeString(entry.getKey());
+				out.writeInt(card);
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(graphTmp);
+			throw e;
+		}
+		Files.move(graphTmp, graph, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void writeCard(Output out, CardId id, ScryfallCard card) throws IOException {
+		List<ScryfallFace> faces = new ArrayList<>(card.faces());
+		Map<ScryfallFace, Integer> faceIndices = new IdentityHashMap<>();
+		for (ScryfallFace face : faces) faceIndices.put(face, faceIndices.size());
+
+		// Every face was created exactly once, by one of addFace(), addTransformedFace() or addFlippedFace(). Record which,
+		// so read() can link them up the same way.
+		int[] kinds = new int[faces.size()], sources = new int[faces.size()];
+		for (int i = 0; i < faces.size(); ++i) {
+			kinds[i] = card.mainFace(faces.get(i)) ? MAIN_FACE : FACE;
+			sources[i] = -1;
+		}
+
+		for (int i = 0; i < faces.size(); ++i) {
+			for (emi.lib.mtg.Card.Face target : card.transformed(faces.get(i))) {
+				int t = faceIndices.get(target);
+				kinds[t] = TRANSFORMED_FACE;
+				sources[t] = i;
+			}
+
+			emi.lib.mtg.Card.Face flipped = card.flipped(faces.get(i));
+			if (flipped != null) {
+				int t = faceIndices.get(flipped);
+				kinds[t] = FLIPPED_FACE;
+				sources[t] = i;
+			}
+		}
+
+		out.writeLong(id.uuid().getMostSignificantBits());
+		out.writeLong(id.uuid().getLeastSignificantBits());
+		card.write(out);
+
+		out.writeInt(faces.size());
+		for (int i = 0; i < faces.size(); ++i) {
+			if (kinds[i] == TRANSFORMED_FACE || kinds[i] == FLIPPED_FACE) {
+				if (sources[i] > i) throw new IOException(String.format("Face %s of %s comes before the face it's derived from", faces.get(i), card));
+			}
+			out.writeByte(kinds[i]);
+			out.writeInt(sources[i]);
+			faces.get(i).write(out);
+		}
+
+		out.writeInt(card.prints().size());
+		for (ScryfallPrint print : card.prints()) {
+			out.writeString(print.set().code());
+			print.write(out);
+
+			out.writeInt(print.faces().size());
+			for (ScryfallPrintedFace face : print.faces()) {
+				Integer faceIndex = faceIndices.get(face.face());
+				if (faceIndex == null) throw new IOException(String.format("Print %s has a face %s which isn't one of its card's faces", print, face.face()));
+				out.writeInt(faceIndex);
+				face.write(out);
+			}
+		}
+	}
+
+	/**
+	 * Reads the snapshot into the given maps, if it exists and matches the data file.
+	 *
+	 * @param dataDir The directory containing the snapshot.
+	 * @param key The key of the current data, as returned by key().
+	 * @param progress Receives the fraction of cards restored so far. May be null.
+	 * @param setsRead Run once every set has been read, before any cards are. May be null.
+	 * @return True if the snapshot was read, or false if there isn't a usable one; the maps are untouched in that case.
+	 * @throws IOException If the snapshot exists but is corrupt. The maps may have been partially filled.
+	 */
+	static boolean read(Path dataDir, long key, DoubleConsumer progress, Runnable setsRead, Map<String, ScryfallSet> sets, Map<CardId, ScryfallCard> cards, Map<UUID, ScryfallPrint> prints, Map<String, ScryfallCard> cardNameIndex) throws IOException {
+		Path graph = graphFile(dataDir);
+		if (!Files.exists(graph) || Util.jarNewerThan(graph)) return false;
+
+		try (Input in = new Input(new BufferedInputStream(Compression.decompress(Files.newInputStream(graph))))) {
+			if (in.readInt() != MAGIC) throw new IOException("Not a Scryfall snapshot");
+			if (in.readInt() != VERSION || in.readLong() != key) return false;
+
+			for (int i = in.readInt(); i > 0; --i) {
+				emi.lib.mtg.scryfall.api.Set set = ScryfallApi.GSON.fromJson(in.readString(), emi.lib.mtg.scryfall.api.Set.class);
+				sets.put(set.code, new ScryfallSet(set));
+			}
+			if (setsRead != null) setsRead.run();
+
+			int cardCount = in.readInt();
+			ScryfallCard[] restored = new ScryfallCard[cardCount];
+			for (int i = 0; i < cardCount; ++i) {
+				restored[i] = readCard(in, sets, cards, prints);
+				if (progress != null && (i & 0x1FF) == 0) progress.accept(i / (double) cardCount);
+			}
+
+			int names = in.readInt();
+			for (int i = 0; i < names; ++i) cardNameIndex.put(in.readString(), restored[in.readInt()]);
+
+			return true;
+		} catch (RuntimeException re) {
+			throw new IOException(String.format("Scryfall snapshot %s is corrupt", graph), re);
+		}
+	}
+
+	private static ScryfallCard readCard(Input in, Map<String, ScryfallSet> sets, Map<CardId, ScryfallCard> cards, Map<UUID, ScryfallPrint> prints) throws IOException {
+		CardId id = CardId.of(new UUID(in.readLong(), in.readLong()));
+		ScryfallCard card = new ScryfallCard(in);
+
+		ScryfallFace[] faces = new ScryfallFace[in.readInt()];
+		for (int i = 0; i < faces.length; ++i) {
+			int kind = in.readByte(), source = in.readInt();
+			ScryfallFace face = new ScryfallFace(in);
+
+			switch (kind) {
+				case FACE:
+				case MAIN_FACE:
+					faces[i] = card.addFace(face, kind == MAIN_FACE);
+					break;
+				case TRANSFORMED_FACE:
+					faces[i] = card.addTransformedFace(faces[source], face);
+					break;
+				case FLIPPED_FACE:
+					faces[i] = card.addFlippedFace(faces[source], face);
+					break;
+				default:
+					throw new IOException(String.format("Unrecognized face kind %d", kind));
+			}
+		}
+
+		List<ScryfallPrint> restored = new ArrayList<>();
+		for (int i = in.readInt(); i > 0; --i) {
+			String setCode = in.readString();
+			ScryfallSet set = sets.get(setCode);
+			if (set == null) throw new IOException(String.format("Snapshot refers to unknown set %s", setCode));
+
+			ScryfallPrint print = card.addPrint(new ScryfallPrint(set, card, in));
+			for (int j = in.readInt(); j > 0; --j) {
+				ScryfallFace face = faces[in.readInt()];
+				print.addFace(new ScryfallPrintedFace(print, face, in));
+			}
+			restored.add(print);
+		}
+
+		// Only index the card once it's completely linked.
+		cards.put(id, card);
+		for (ScryfallPrint print : restored) {
+			ScryfallSet set = (ScryfallSet) print.set();
+			set.prints.put(print.id(), print);
+			set.printsByCn.put(print.collectorNumber(), print);
+			prints.put(print.id(), print);
+		}
+
+		return card;
+	}
+
+	/**
+	 * Snapshot output. Strings are written once and referred to by index after that, since most of them (type lines,
+	 * mana costs, image URL prefixes and enum names) are shared by thousands of faces.
+	 */
+	static class Output extends DataOutputStream {
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		Output(OutputStream out) {
+			super(out);
+		}
+
+		void writeString(String value) throws IOException {
+			if (value == null) {
+				writeInt(-1);
+				return;
+			}
+
+			Integer index = strings.get(value);
+			if (index != null) {
+				writeInt(index);
+			} else {
+				writeInt(strings.size());
+				writeUTF(value);
+				strings.put(value, strings.size());
+			}
+		}
+
+		void writeUuid(UUID value) throws IOException {
+			writeBoolean(value != null);
+			if (value == null) return;
+			writeLong(value.getMostSignificantBits());
+			writeLong(value.getLeastSignificantBits());
+		}
+
+		void writeUri(ScryfallUri value) throws IOException {
+			writeBoolean(value != null);
+			if (value == null) return;
+			writeString(value.prefix());
+			writeString(value.rest());
+		}
+
+		void writeEnum(Enum<?> value) throws IOException {
+			writeString(value != null ? value.name() : null);
+		}
+	}
+
+	/**
+	 * Reads what Output wrote. Every copy of a string read from the snapshot is the same instance.
+	 */
+	static class Input extends DataInputStream {
+		private final List<String> strings = new ArrayList<>();
+
+		Input(InputStream in) {
+			super(in);
+		}
+
+		String readString() throws IOException {
+			int index = readInt();
+			if (index < 0) return null;
+			if (index < strings.size()) return strings.get(index);
+			if (index > strings.size()) throw new IOException(String.format("String %d read before string %d", index, strings.size()));
+
+			String value = readUTF();
+			strings.add(value);
+			return value;
+		}
+
+		UUID readUuid() throws IOException {
+			return readBoolean() ? new UUID(readLong(), readLong()) : null;
+		}
+
+		ScryfallUri readUri() throws IOException {
+			return readBoolean() ? ScryfallUri.of(readString(), readString()) : null;
+		}
+
+		<E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+			String name = readString();
+			return name != null ? Enum.valueOf(type, name) : null;
+		}
+	}
+}
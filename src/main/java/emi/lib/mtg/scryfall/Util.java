@@ -1,20 +1,52 @@
 package emi.lib.mtg.scryfall;
 
+import emi.lib.mtg.Mana;
+import emi.lib.mtg.TypeLine;
 import emi.lib.mtg.enums.Rarity;
 import emi.lib.mtg.enums.Color;
 import emi.mtg.deckbuilder.util.PluginUtils;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.FileSystemException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 class Util {
+	/**
+	 * Past this many distinct values, intern tables stop growing and further values are parsed every time. Real data
+	 * has a few thousand distinct type lines and fewer mana costs, so this is only a guard against junk.
+	 */
+	private static final int MAX_INTERNED = 1 << 14;
+
+	private static final ConcurrentHashMap<String, Mana.Value> MANA_COSTS = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, TypeLine> TYPE_LINES = new ConcurrentHashMap<>();
+
+	/**
+	 * Every combination of the five Scryfall colors, indexed by a bitmask of their ordinals.
+	 */
+	private static final Color.Combination[] COLOR_COMBINATIONS = new Color.Combination[32];
+	static {
+		emi.lib.mtg.scryfall.api.enums.Color[] apiColors = emi.lib.mtg.scryfall.api.enums.Color.values();
+		for (int mask = 0; mask < COLOR_COMBINATIONS.length; ++mask) {
+			final int m = mask;
+			COLOR_COMBINATIONS[mask] = IntStream.range(0, 5)
+					.filter(i -> (m & (1 << i)) != 0)
+					.mapToObj(i -> apiColors[i].libMtgColor)
+					.collect(Color.Combination.COLOR_COLLECTOR);
+		}
+	}
+
 	static int or(Integer in, int def) {
 		return in != null ? in : def;
 	}
@@ -32,7 +64,39 @@ class Util {
 	}
 
 	static Color.Combination mapColor(Set<emi.lib.mtg.scryfall.api.enums.Color> apiColors) {
-		return apiColors == null ? Color.Combination.Empty : apiColors.stream().map(c -> c.libMtgColor).collect(Color.Combination.COLOR_COLLECTOR);
+		if (apiColors == null) return Color.Combination.Empty;
+
+		int mask = 0;
+		for (emi.lib.mtg.scryfall.api.enums.Color color : apiColors) {
+			if (color.libMtgColor == null) return apiColors.stream().map(c -> c.libMtgColor).collect(Color.Combination.COLOR_COLLECTOR);
+			mask |= 1 << color.ordinal();
+		}
+
+		return COLOR_COMBINATIONS[mask];
+	}
+
+	/**
+	 * Parses a mana cost, sharing one instance between every face with the same mana cost text.
+	 */
+	static Mana.Value manaCost(String text) {
+		return intern(MANA_COSTS, text, Mana.Value::parse);
+	}
+
+	/**
+	 * Parses a type line, sharing one instance between every face with the same type line text.
+	 */
+	static TypeLine typeLine(String text) {
+		return intern(TYPE_LINES, text, TypeLine.Basic::parse);
+	}
+
+	private static <T> T intern(ConcurrentHashMap<String, T> table, String text, Function<String, ? extends T> parser) {
+		if (text == null) return parser.apply(null);
+
+		T value = table.get(text);
+		if (value != null) return value;
+		if (table.size() >= MAX_INTERNED) return parser.apply(text);
+
+		return table.computeIfAbsent(text, parser);
 	}
 
 	static Rarity mapRarity(emi.lib.mtg.scryfall.api.Card card) {
@@ -86,15 +150,76 @@ class Util {
 		return to;
 	}
 
+	/**
+	 * Moves a finished file over another, atomically where the file system allows. The target is replaced rather than
+	 * overwritten, so anything still mapping the old file keeps reading it: POSIX systems keep an unlinked file around
+	 * until its last mapping is released. Windows refuses to replace a mapped file at all, so if the move fails, release
+	 * is run to drop any mappings of the target, and the move is retried.
+	 *
+	 * @param source The finished file, on the same file system as target. It's deleted if it can't be moved.
+	 * @param target The file to replace.
+	 * @param release Drops any mappings of target. May be null.
+	 * @throws IOException If the file couldn't be replaced.
+	 */
+	static void replaceFile(Path source, Path target, Runnable release) throws IOException {
+		try {
+			try {
+				Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException amnse) {
+				Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (FileSystemException fse) {
+			if (release == null) {
+				Files.deleteIfExists(source);
+				throw fse;
+			}
+
+			// A mapping is only unmapped once its buffer has been garbage collected, and there's no way to force that.
+			release.run();
+			for (int attempt = 0; ; ++attempt) {
+				System.gc();
+				try {
+					Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+					return;
+				} catch (FileSystemException retry) {
+					if (attempt >= 4) {
+						Files.deleteIfExists(source);
+						throw new IOException(String.format("Unable to replace %s, probably because it's still mapped. Restart to finish updating.", target), retry);
+					}
+				}
+
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ie) {
+					Files.deleteIfExists(source);
+					throw new InterruptedIOException("Interrupted while waiting to replace " + target);
+				}
+			}
+		}
+	}
+
 	public static boolean needsUpdate(Path path, long maxAgeSeconds) {
 		try {
 			Instant target = Instant.now().minusSeconds(maxAgeSeconds);
-			Instant jar = Files.getLastModifiedTime(PluginUtils.jarPath(Util.class)).toInstant();
 			Instant file = Files.exists(path) ? Files.getLastModifiedTime(path).toInstant() : Instant.MIN;
-			return jar.isAfter(file) || file.isBefore(target);
+			return jarNewerThan(path) || file.isBefore(target);
 		} catch (IOException ioe) {
 			new IOException(String.format("Unable to check Scryfall JAR or data file %s modified time. Assuming update required.", path.toAbsolutePath()), ioe).printStackTrace();
 			return true;
 		}
 	}
+
+	/**
+	 * Checks whether this library has been updated since the given data file was written. If it has, the file may have
+	 * been produced by different filtering or serialization logic, and should be rebuilt from scratch.
+	 *
+	 * @param path The data file to check.
+	 * @return True if the file doesn't exist or is older than this library's JAR.
+	 * @throws IOException If either modified time couldn't be read.
+	 */
+	public static boolean jarNewerThan(Path path) throws IOException {
+		Instant jar = Files.getLastModifiedTime(PluginUtils.jarPath(Util.class)).toInstant();
+		Instant file = Files.exists(path) ? Files.getLastModifiedTime(path).toInstant() : Instant.MIN;
+		return jar.isAfter(file);
+	}
 }
@@ -0,0 +1,696 @@
+package emi.lib.mtg.scryfall.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import emi.lib.mtg.scryfall.api.enums.*;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Streaming Gson adapters for the API objects we read and write by the hundred thousand: cards, faces, parts and sets.
+ * Gson's reflective adapter looks up and sets every field through reflection, and the enum, UUID and date adapters it
+ * delegates to allocate several intermediate strings per value. These read each field straight from the JsonReader.
+ *
+ * Field names are what LOWER_CASE_WITH_UNDERSCORES would make of the Java field names, so the output matches what the
+ * reflective adapter wrote, minus null fields. Unknown fields are skipped.
+ */
+class ApiAdapters {
+	static TypeAdapterFactory factory() {
+		return new TypeAdapterFactory() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+				Class<? super T> type = typeToken.getRawType();
+				if (type == Card.class) return (TypeAdapter<T>) CARD;
+				if (type == Card.Face.class) return (TypeAdapter<T>) FACE;
+				if (type == Card.Part.class) return (TypeAdapter<T>) PART;
+				if (type == Set.class) return (TypeAdapter<T>) SET;
+				return null;
+			}
+		};
+	}
+
+	private static long hex(String uuid, int from, int to) {
+		long value = 0;
+		for (int i = from; i < to; ++i) {
+			int digit = Character.digit(uuid.charAt(i), 16);
+			if (digit < 0) throw new JsonSyntaxException("Malformed UUID " + uuid);
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a UUID in its canonical 8-4-4-4-12 form without splitting it into substrings first.
+	 */
+	static UUID parseUuid(String uuid) {
+		if (uuid.length() != 36 || uuid.charAt(8) != '-' || uuid.charAt(13) != '-' || uuid.charAt(18) != '-' || uuid.charAt(23) != '-') {
+			try {
+				return UUID.fromString(uuid);
+			} catch (IllegalArgumentException iae) {
+				throw new JsonSyntaxException("Malformed UUID " + uuid, iae);
+			}
+		}
+
+		return new UUID(hex(uuid, 0, 8) << 32 | hex(uuid, 9, 13) << 16 | hex(uuid, 14, 18),
+				hex(uuid, 19, 23) << 48 | hex(uuid, 24, 36));
+	}
+
+	private static int digits(String date, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; ++i) {
+			char c = date.charAt(i);
+			if (c < '0' || c > '9') return -1;
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a date. Plain yyyy-mm-dd dates, which is all Scryfall sends, are parsed directly; anything else goes through
+	 * DateTimeFormatter.ISO_DATE.
+	 */
+	static LocalDate parseDate(String date) {
+		try {
+			if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-') {
+				int year = digits(date, 0, 4), month = digits(date, 5, 7), day = digits(date, 8, 10);
+				if (year >= 0 && month >= 0 && day >= 0) return LocalDate.of(year, month, day);
+			}
+
+			return LocalDate.from(DateTimeFormatter.ISO_DATE.parse(date));
+		} catch (DateTimeException dte) {
+			throw new JsonSyntaxException("Malformed date " + date, dte);
+		}
+	}
+
+	private static List<Integer> readIntegers(JsonReader in) throws IOException {
+		List<Integer> values = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) values.add(in.nextInt());
+		in.endArray();
+		return values;
+	}
+
+	private static void writeIntegers(JsonWriter out, List<Integer> values) throws IOException {
+		out.beginArray();
+		for (Integer value : values) out.value(value);
+		out.endArray();
+	}
+
+	private static <T extends ApiEnum, C extends Collection<T>> C readEnums(JsonReader in, Class<T> type, C values) throws IOException {
+		in.beginArray();
+		while (in.hasNext()) values.add(ApiEnum.Serialization.parse(type, in.nextString()));
+		in.endArray();
+		return values;
+	}
+
+	private static <T extends ApiEnum> Map<String, T> readEnums(JsonReader in, Class<T> type) throws IOException {
+		Map<String, T> values = new LinkedHashMap<>();
+		in.beginObject();
+		while (in.hasNext()) values.put(in.nextName(), ApiEnum.Serialization.parse(type, in.nextString()));
+		in.endObject();
+		return values;
+	}
+
+	private static void writeEnums(JsonWriter out, Collection<? extends ApiEnum> values) throws IOException {
+		out.beginArray();
+		for (ApiEnum value : values) out.value(value.serialized());
+		out.endArray();
+	}
+
+	private static void writeEnums(JsonWriter out, Map<String, ? extends ApiEnum> values) throws IOException {
+		out.beginObject();
+		for (Map.Entry<String, ? extends ApiEnum> entry : values.entrySet()) out.name(entry.getKey()).value(entry.getValue().serialized());
+		out.endObject();
+	}
+
+	private static Map<String, ScryfallUri> readUris(JsonReader in) throws IOException {
+		Map<String, ScryfallUri> values = new LinkedHashMap<>();
+		in.beginObject();
+		while (in.hasNext()) values.put(in.nextName(), ScryfallUri.of(in.nextString()));
+		in.endObject();
+		return values;
+	}
+
+	private static void writeUris(JsonWriter out, Map<String, ScryfallUri> values) throws IOException {
+		out.beginObject();
+		for (Map.Entry<String, ScryfallUri> entry : values.entrySet()) out.name(entry.getKey()).value(entry.getValue().toString());
+		out.endObject();
+	}
+
+	private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+		List<T> values = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) values.add(adapter.read(in));
+		in.endArray();
+		return values;
+	}
+
+	private static <T> void writeList(JsonWriter out, List<T> values, TypeAdapter<T> adapter) throws IOException {
+		out.beginArray();
+		for (T value : values) adapter.write(out, value);
+		out.endArray();
+	}
+
+	static final TypeAdapter<Card.Part> PART = new TypeAdapter<Card.Part>() {
+		@Override
+		public void write(JsonWriter out, Card.Part value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			if (value.id != null) out.name("id").value(value.id.toString());
+			if (value.name != null) out.name("name").value(value.name);
+			if (value.component != null) out.name("component").value(value.component);
+			if (value.uri != null) out.name("uri").value(value.uri.toString());
+			out.endObject();
+		}
+
+		@Override
+		public Card.Part read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			Card.Part value = new Card.Part();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					continue;
+				}
+
+				switch (name) {
+					case "id":
+						value.id = parseUuid(in.nextString());
+						break;
+					case "name":
+						value.name = in.nextString();
+						break;
+					case "component":
+						value.component = in.nextString();
+						break;
+					case "uri":
+						value.uri = ScryfallUri.of(in.nextString());
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+
+			return value;
+		}
+	};
+
+	static final TypeAdapter<Card.Face> FACE = new TypeAdapter<Card.Face>() {
+		@Override
+		public void write(JsonWriter out, Card.Face value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			if (value.object != null) out.name("object").value(value.object);
+			if (value.name != null) out.name("name").value(value.name);
+			if (value.manaCost != null) out.name("mana_cost").value(value.manaCost);
+			if (value.typeLine != null) out.name("type_line").value(value.typeLine);
+			if (value.oracleText != null) out.name("oracle_text").value(value.oracleText);
+			if (value.power != null) out.name("power").value(value.power);
+			if (value.toughness != null) out.name("toughness").value(value.toughness);
+			if (value.loyalty != null) out.name("loyalty").value(value.loyalty);
+			if (value.defense != null) out.name("defense").value(value.defense);
+			if (value.colors != null) writeEnums(out.name("colors"), value.colors);
+			if (value.colorIndicator != null) writeEnums(out.name("color_indicator"), value.colorIndicator);
+			if (value.flavorText != null) out.name("flavor_text").value(value.flavorText);
+			if (value.artist != null) out.name("artist").value(value.artist);
+			if (value.artistId != null) out.name("artist_id").value(value.artistId.toString());
+			if (value.illustrationId != null) out.name("illustration_id").value(value.illustrationId.toString());
+			if (value.oracleId != null) out.name("oracle_id").value(value.oracleId.toString());
+			if (value.imageUris != null) writeUris(out.name("image_uris"), value.imageUris);
+			out.endObject();
+		}
+
+		@Override
+		public Card.Face read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			Card.Face value = new Card.Face();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					continue;
+				}
+
+				switch (name) {
+					case "object":
+						value.object = in.nextString();
+						break;
+					case "name":
+						value.name = in.nextString();
+						break;
+					case "mana_cost":
+						value.manaCost = in.nextString();
+						break;
+					case "type_line":
+						value.typeLine = in.nextString();
+						break;
+					case "oracle_text":
+						value.oracleText = in.nextString();
+						break;
+					case "power":
+						value.power = in.nextString();
+						break;
+					case "toughness":
+						value.toughness = in.nextString();
+						break;
+					case "loyalty":
+						value.loyalty = in.nextString();
+						break;
+					case "defense":
+						value.defense = in.nextString();
+						break;
+					case "colors":
+						value.colors = readEnums(in, Color.class, new LinkedHashSet<>());
+						break;
+					case "color_indicator":
+						value.colorIndicator = readEnums(in, Color.class, new LinkedHashSet<>());
+						break;
+					case "flavor_text":
+						value.flavorText = in.nextString();
+						break;
+					case "artist":
+						value.artist = in.nextString();
+						break;
+					case "artist_id":
+						value.artistId = parseUuid(in.nextString());
+						break;
+					case "illustration_id":
+						value.illustrationId = parseUuid(in.nextString());
+						break;
+					case "oracle_id":
+						value.oracleId = parseUuid(in.nextString());
+						break;
+					case "image_uris":
+						value.imageUris = readUris(in);
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+
+			return value;
+		}
+	};
+
+	static final TypeAdapter<Card> CARD = new TypeAdapter<Card>() {
+		@Override
+		public void write(JsonWriter out, Card value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			if (value.object != null) out.name("object").value(value.object);
+			if (value.id != null) out.name("id").value(value.id.toString());
+			if (value.oracleId != null) out.name("oracle_id").value(value.oracleId.toString());
+			if (value.multiverseIds != null) writeIntegers(out.name("multiverse_ids"), value.multiverseIds);
+			if (value.mtgoId != null) out.name("mtgo_id").value(value.mtgoId);
+			if (value.uri != null) out.name("uri").value(value.uri.toString());
+			if (value.scryfallUri != null) out.name("scryfall_uri").value(value.scryfallUri.toString());
+			if (value.printsSearchUri != null) out.name("prints_search_uri").value(value.printsSearchUri.toString());
+			if (value.name != null) out.name("name").value(value.name);
+			if (value.layout != null) out.name("layout").value(value.layout.serialized());
+			if (value.cmc != null) out.name("cmc").value(value.cmc);
+			if (value.typeLine != null) out.name("type_line").value(value.typeLine);
+			if (value.oracleText != null) out.name("oracle_text").value(value.oracleText);
+			if (value.manaCost != null) out.name("mana_cost").value(value.manaCost);
+			if (value.power != null) out.name("power").value(value.power);
+			if (value.toughness != null) out.name("toughness").value(value.toughness);
+			if (value.loyalty != null) out.name("loyalty").value(value.loyalty);
+			if (value.defense != null) out.name("defense").value(value.defense);
+			if (value.lifeModifier != null) out.name("life_modifier").value(value.lifeModifier);
+			if (value.handModifier != null) out.name("hand_modifier").value(value.handModifier);
+			if (value.colors != null) writeEnums(out.name("colors"), value.colors);
+			if (value.colorIndicator != null) writeEnums(out.name("color_indicator"), value.colorIndicator);
+			if (value.colorIdentity != null) writeEnums(out.name("color_identity"), value.colorIdentity);
+			if (value.allParts != null) writeList(out.name("all_parts"), value.allParts, PART);
+			if (value.cardFaces != null) writeList(out.name("card_faces"), value.cardFaces, FACE);
+			if (value.legalities != null) writeEnums(out.name("legalities"), value.legalities);
+			out.name("reserved").value(value.reserved);
+			if (value.edhrecRank != null) out.name("edhrec_rank").value(value.edhrecRank);
+			if (value.rulingsUri != null) out.name("rulings_uri").value(value.rulingsUri.toString());
+			if (value.lang != null) out.name("lang").value(value.lang);
+			if (value.printedName != null) out.name("printed_name").value(value.printedName);
+			if (value.printedText != null) out.name("printed_text").value(value.printedText);
+			if (value.printedTypeLine != null) out.name("printed_type_line").value(value.printedTypeLine);
+			if (value.set != null) out.name("set").value(value.set);
+			if (value.setType != null) out.name("set_type").value(value.setType.serialized());
+			if (value.setName != null) out.name("set_name").value(value.setName);
+			if (value.collectorNumber != null) out.name("collector_number").value(value.collectorNumber);
+			if (value.setSearchUri != null) out.name("set_search_uri").value(value.setSearchUri.toString());
+			if (value.setUri != null) out.name("set_uri").value(value.setUri.toString());
+			if (value.scryfallSetUrl != null) out.name("scryfall_set_url").value(value.scryfallSetUrl.toString());
+			if (value.imageUris != null) writeUris(out.name("image_uris"), value.imageUris);
+			out.name("highres_image").value(value.highresImage);
+			if (value.finishes != null) writeEnums(out.name("finishes"), value.finishes);
+			out.name("oversized").value(value.oversized);
+			out.name("reprint").value(value.reprint);
+			out.name("digital").value(value.digital);
+			out.name("promo").value(value.promo);
+			if (value.illustrationId != null) out.name("illustration_id").value(value.illustrationId.toString());
+			if (value.rarity != null) out.name("rarity").value(value.rarity.serialized());
+			if (value.flavorText != null) out.name("flavor_text").value(value.flavorText);
+			if (value.artist != null) out.name("artist").value(value.artist);
+			if (value.frame != null) out.name("frame").value(value.frame.serialized());
+			out.name("full_art").value(value.fullArt);
+			if (value.watermark != null) out.name("watermark").value(value.watermark);
+			if (value.borderColor != null) out.name("border_color").value(value.borderColor.serialized());
+			if (value.storySpotlightNumber != null) out.name("story_spotlight_number").value(value.storySpotlightNumber);
+			if (value.storySpotlightUri != null) out.name("story_spotlight_uri").value(value.storySpotlightUri);
+			out.name("timeshifted").value(value.timeshifted);
+			out.name("colorshifted").value(value.colorshifted);
+			out.name("futureshifted").value(value.futureshifted);
+			if (value.usd != null) out.name("usd").value(value.usd);
+			if (value.eur != null) out.name("eur").value(value.eur);
+			if (value.purchaseUris != null) writeUris(out.name("purchase_uris"), value.purchaseUris);
+			if (value.relatedUris != null) writeUris(out.name("related_uris"), value.relatedUris);
+			if (value.releasedAt != null) out.name("released_at").value(value.releasedAt.toString());
+			out.endObject();
+		}
+
+		@Override
+		public Card read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			Card value = new Card();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					continue;
+				}
+
+				switch (name) {
+					case "object":
+						value.object = in.nextString();
+						break;
+					case "id":
+						value.id = parseUuid(in.nextString());
+						break;
+					case "oracle_id":
+						value.oracleId = parseUuid(in.nextString());
+						break;
+					case "multiverse_ids":
+						value.multiverseIds = readIntegers(in);
+						break;
+					case "mtgo_id":
+						value.mtgoId = in.nextInt();
+						break;
+					case "uri":
+						value.uri = ScryfallUri.of(in.nextString());
+						break;
+					case "scryfall_uri":
+						value.scryfallUri = ScryfallUri.of(in.nextString());
+						break;
+					case "prints_search_uri":
+						value.printsSearchUri = ScryfallUri.of(in.nextString());
+						break;
+					case "name":
+						value.name = in.nextString();
+						break;
+					case "layout":
+						value.layout = ApiEnum.Serialization.parse(CardLayout.class, in.nextString());
+						break;
+					case "cmc":
+						value.cmc = in.nextDouble();
+						break;
+					case "type_line":
+						value.typeLine = in.nextString();
+						break;
+					case "oracle_text":
+						value.oracleText = in.nextString();
+						break;
+					case "mana_cost":
+						value.manaCost = in.nextString();
+						break;
+					case "power":
+						value.power = in.nextString();
+						break;
+					case "toughness":
+						value.toughness = in.nextString();
+						break;
+					case "loyalty":
+						value.loyalty = in.nextString();
+						break;
+					case "defense":
+						value.defense = in.nextString();
+						break;
+					case "life_modifier":
+						value.lifeModifier = in.nextString();
+						break;
+					case "hand_modifier":
+						value.handModifier = in.nextString();
+						break;
+					case "colors":
+						value.colors = readEnums(in, Color.class, new LinkedHashSet<>());
+						break;
+					case "color_indicator":
+						value.colorIndicator = readEnums(in, Color.class, new LinkedHashSet<>());
+						break;
+					case "color_identity":
+						value.colorIdentity = readEnums(in, Color.class, new LinkedHashSet<>());
+						break;
+					case "all_parts":
+						value.allParts = readList(in, PART);
+						break;
+					case "card_faces":
+						value.cardFaces = readList(in, FACE);
+						break;
+					case "legalities":
+						value.legalities = readEnums(in, Legality.class);
+						break;
+					case "reserved":
+						value.reserved = in.nextBoolean();
+						break;
+					case "edhrec_rank":
+						value.edhrecRank = in.nextInt();
+						break;
+					case "rulings_uri":
+						value.rulingsUri = ScryfallUri.of(in.nextString());
+						break;
+					case "lang":
+						value.lang = in.nextString();
+						break;
+					case "printed_name":
+						value.printedName = in.nextString();
+						break;
+					case "printed_text":
+						value.printedText = in.nextString();
+						break;
+					case "printed_type_line":
+						value.printedTypeLine = in.nextString();
+						break;
+					case "set":
+						value.set = in.nextString();
+						break;
+					case "set_type":
+						value.setType = ApiEnum.Serialization.parse(SetType.class, in.nextString());
+						break;
+					case "set_name":
+						value.setName = in.nextString();
+						break;
+					case "collector_number":
+						value.collectorNumber = in.nextString();
+						break;
+					case "set_search_uri":
+						value.setSearchUri = ScryfallUri.of(in.nextString());
+						break;
+					case "set_uri":
+						value.setUri = ScryfallUri.of(in.nextString());
+						break;
+					case "scryfall_set_url":
+						value.scryfallSetUrl = ScryfallUri.of(in.nextString());
+						break;
+					case "image_uris":
+						value.imageUris = readUris(in);
+						break;
+					case "highres_image":
+						value.highresImage = in.nextBoolean();
+						break;
+					case "finishes":
+						value.finishes = readEnums(in, Finish.class, new ArrayList<>());
+						break;
+					case "oversized":
+						value.oversized = in.nextBoolean();
+						break;
+					case "reprint":
+						value.reprint = in.nextBoolean();
+						break;
+					case "digital":
+						value.digital = in.nextBoolean();
+						break;
+					case "promo":
+						value.promo = in.nextBoolean();
+						break;
+					case "illustration_id":
+						value.illustrationId = parseUuid(in.nextString());
+						break;
+					case "rarity":
+						value.rarity = ApiEnum.Serialization.parse(Rarity.class, in.nextString());
+						break;
+					case "flavor_text":
+						value.flavorText = in.nextString();
+						break;
+					case "artist":
+						value.artist = in.nextString();
+						break;
+					case "frame":
+						value.frame = ApiEnum.Serialization.parse(CardFrame.class, in.nextString());
+						break;
+					case "full_art":
+						value.fullArt = in.nextBoolean();
+						break;
+					case "watermark":
+						value.watermark = in.nextString();
+						break;
+					case "border_color":
+						value.borderColor = ApiEnum.Serialization.parse(BorderColor.class, in.nextString());
+						break;
+					case "story_spotlight_number":
+						value.storySpotlightNumber = in.nextInt();
+						break;
+					case "story_spotlight_uri":
+						value.storySpotlightUri = in.nextString();
+						break;
+					case "timeshifted":
+						value.timeshifted = in.nextBoolean();
+						break;
+					case "colorshifted":
+						value.colorshifted = in.nextBoolean();
+						break;
+					case "futureshifted":
+						value.futureshifted = in.nextBoolean();
+						break;
+					case "usd":
+						value.usd = in.nextString();
+						break;
+					case "eur":
+						value.eur = in.nextString();
+						break;
+					case "purchase_uris":
+						value.purchaseUris = readUris(in);
+						break;
+					case "related_uris":
+						value.relatedUris = readUris(in);
+						break;
+					case "released_at":
+						value.releasedAt = parseDate(in.nextString());
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+
+			return value;
+		}
+	};
+
+	static final TypeAdapter<Set> SET = new TypeAdapter<Set>() {
+		@Override
+		public void write(JsonWriter out, Set value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			if (value.object != null) out.name("object").value(value.object);
+			if (value.code != null) out.name("code").value(value.code);
+			if (value.name != null) out.name("name").value(value.name);
+			if (value.searchUri != null) out.name("search_uri").value(value.searchUri.toString());
+			if (value.setType != null) out.name("set_type").value(value.setType.serialized());
+			if (value.releasedAt != null) out.name("released_at").value(value.releasedAt.toString());
+			out.name("digital").value(value.digital);
+			out.endObject();
+		}
+
+		@Override
+		public Set read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			Set value = new Set();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					continue;
+				}
+
+				switch (name) {
+					case "object":
+						value.object = in.nextString();
+						break;
+					case "code":
+						value.code = in.nextString();
+						break;
+					case "name":
+						value.name = in.nextString();
+						break;
+					case "search_uri":
+						value.searchUri = ScryfallUri.of(in.nextString());
+						break;
+					case "set_type":
+						value.setType = ApiEnum.Serialization.parse(SetType.class, in.nextString());
+						break;
+					case "released_at":
+						value.releasedAt = parseDate(in.nextString());
+						break;
+					case "digital":
+						value.digital = in.nextBoolean();
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+
+			return value;
+		}
+	};
+}
@@ -2,7 +2,6 @@ package emi.lib.mtg.scryfall.api;
 
 import emi.lib.mtg.scryfall.api.enums.*;
 
-import java.net.URL;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -33,14 +32,14 @@ public class Card extends ApiObject {
 		public UUID artistId;
 		public UUID illustrationId;
 		public UUID oracleId;
-		public Map<String, URL> imageUris;
+		public Map<String, ScryfallUri> imageUris;
 	}
 
 	public static class Part {
 		public UUID id;
 		public String name;
 		public String component;
-		public URL uri;
+		public ScryfallUri uri;
 	}
 
 	/*
@@ -51,9 +50,9 @@ public class Card extends ApiObject {
 	public UUID oracleId;
 	public List<Integer> multiverseIds;
 	public Integer mtgoId;
-	public URL uri;
-	public URL scryfallUri;
-	public URL printsSearchUri;
+	public ScryfallUri uri;
+	public ScryfallUri scryfallUri;
+	public ScryfallUri printsSearchUri;
 
 	/*
 	 * Gameplay Information
@@ -74,7 +73,7 @@ public class Card extends ApiObject {
 	public Map<String, Legality> legalities;
 	public boolean reserved;
 	public Integer edhrecRank;
-	public URL rulingsUri;
+	public ScryfallUri rulingsUri;
 
 	/*
 	 * Print-Specific
@@ -88,10 +87,10 @@ public class Card extends ApiObject {
 	public SetType setType;
 	public String setName;
 	public String collectorNumber;
-	public URL setSearchUri;
-	public URL setUri;
-	public URL scryfallSetUrl;
-	public Map<String, URL> imageUris;
+	public ScryfallUri setSearchUri;
+	public ScryfallUri setUri;
+	public ScryfallUri scryfallSetUrl;
+	public Map<String, ScryfallUri> imageUris;
 	public boolean highresImage;
 	public List<Finish> finishes;
 	public boolean oversized;
@@ -110,8 +109,8 @@ public class Card extends ApiObject {
 	public String storySpotlightUri; // This should be a URL, but Scryfall can't get shit consistent.
 	public boolean timeshifted, colorshifted, futureshifted;
 	public String usd, eur;
-	public Map<String, URL> purchaseUris;
-	public Map<String, URL> relatedUris;
+	public Map<String, ScryfallUri> purchaseUris;
+	public Map<String, ScryfallUri> relatedUris;
 	public LocalDate releasedAt;
 
 	public UUID oracleId() {
@@ -0,0 +1,40 @@
+package emi.lib.mtg.scryfall.api;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a JSON array of cards one element at a time, so that callers never need to hold more than a single card in
+ * memory. Used for Scryfall's bulk data files, which are far too large to materialize as a list.
+ */
+public class CardStream implements Closeable {
+	private final JsonReader reader;
+
+	public CardStream(InputStream input) throws IOException {
+		this.reader = ScryfallApi.GSON.newJsonReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		this.reader.beginArray();
+	}
+
+	public boolean hasNext() throws IOException {
+		return reader.hasNext();
+	}
+
+	public Card next() throws IOException {
+		try {
+			return ApiAdapters.CARD.read(reader);
+		} catch (JsonParseException | IllegalStateException jpe) {
+			throw new IOException("Unable to parse card from bulk data stream", jpe);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -3,6 +3,7 @@ package emi.lib.mtg.scryfall.api;
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import emi.lib.mtg.scryfall.api.enums.ApiEnum;
 import emi.lib.mtg.scryfall.api.enums.BulkDataType;
@@ -93,28 +94,54 @@ public class ScryfallApi {
 		};
 	}
 
+	private static TypeAdapter<ScryfallUri> uriAdapter() {
+		return new TypeAdapter<ScryfallUri>() {
+			@Override
+			public void write(JsonWriter out, ScryfallUri value) throws IOException {
+				if (value == null) {
+					out.nullValue();
+				} else {
+					out.value(value.toString());
+				}
+			}
+
+			@Override
+			public ScryfallUri read(JsonReader in) throws IOException {
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					return null;
+				}
+
+				return ScryfallUri.of(in.nextString());
+			}
+		};
+	}
+
 	private static TypeAdapter<LocalDate> localDateAdapter() {
 		return new TypeAdapter<LocalDate>() {
 			@Override
 			public void write(JsonWriter out, LocalDate value) throws IOException {
-				out.value(value.toString());
+				if (value == null) {
+					out.nullValue();
+				} else {
+					out.value(value.toString());
+				}
 			}
 
 			@Override
 			public LocalDate read(JsonReader in) throws IOException {
-				String sval = "";
 				switch (in.peek()) {
+					case NULL:
+						in.nextNull();
+						return null;
 					case NAME:
-						sval = in.nextName();
-						break;
+						return ApiAdapters.parseDate(in.nextName());
 					case STRING:
-						sval = in.nextString();
-						break;
+						return ApiAdapters.parseDate(in.nextString());
 					default:
 						assert false;
 						return LocalDate.MIN;
 				}
-				return LocalDate.from(DateTimeFormatter.ISO_DATE.parse(sval));
 			}
 		};
 	}
@@ -132,8 +159,10 @@ public class ScryfallApi {
 
 		// Register enum type adapters
 		builder.registerTypeAdapterFactory(ApiEnum.typeAdapterFactory());
+		builder.registerTypeAdapterFactory(ApiAdapters.factory());
 		builder.registerTypeAdapter(Instant.class, instantAdapter());
 		builder.registerTypeAdapter(LocalDate.class, localDateAdapter());
+		builder.registerTypeAdapter(ScryfallUri.class, uriAdapter());
 
 		builder.enableComplexMapKeySerialization();
 		builder.setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES);
@@ -154,15 +183,81 @@ public class ScryfallApi {
 		return INSTANCE;
 	}
 
+	/**
+	 * HTTP cache validators, i.e. the ETag and Last-Modified headers of a previous response.
+	 */
+	public static class Validators {
+		public String etag;
+		public String lastModified;
+
+		public Validators() {
+			this(null, null);
+		}
+
+		public Validators(String etag, String lastModified) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * Describes a raw transfer of a resource. Unlike an ordinary request, the response body is handed back exactly as
+	 * the server sent it, without decoding any Content-Encoding, so that it can be stored and resumed byte-for-byte.
+	 *
+	 * If offset is zero, any validators are sent as If-None-Match/If-Modified-Since, and the request completes with null
+	 * if the server reports the resource is unchanged. Otherwise, only the bytes from offset onward are requested, with
+	 * the validators sent as If-Range; if the resource has changed since, the server sends all of it instead, and
+	 * partial will be false.
+	 *
+	 * Once the response arrives, the validators are overwritten with the server's, and the remaining fields describe
+	 * the response.
+	 */
+	public static class Transfer {
+		public final long offset;
+		public final Validators validators;
+
+		/** True if the server sent only the bytes from offset onward. */
+		public boolean partial;
+
+		/** The total length of the resource as transferred, or -1 if the server didn't say. */
+		public long length;
+
+		/** The Content-Encoding of the transferred bytes, or null if they aren't encoded. */
+		public String encoding;
+
+		public Transfer(long offset, Validators validators) {
+			this.offset = offset;
+			this.validators = validators != null ? validators : new Validators();
+			this.partial = false;
+			this.length = -1;
+			this.encoding = null;
+		}
+	}
+
 	private static class Request extends CompletableFuture<InputStream> {
 		public final URL url;
 		public final String contentType;
 		public final LongConsumer reporter;
+		public final Transfer transfer;
 
-		public Request(URL url, String contentType, LongConsumer reporter) {
+		public Request(URL url, String contentType, LongConsumer reporter, Transfer transfer) {
 			this.url = url;
 			this.contentType = contentType;
 			this.reporter = reporter;
+			this.transfer = transfer;
+		}
+	}
+
+	private static long contentRangeLength(String contentRange) {
+		// Content-Range: bytes <start>-<end>/<length>, where length may be *
+		if (contentRange == null) return -1;
+		int slash = contentRange.lastIndexOf('/');
+		if (slash < 0 || "*".equals(contentRange.substring(slash + 1).trim())) return -1;
+
+		try {
+			return Long.parseLong(contentRange.substring(slash + 1).trim());
+		} catch (NumberFormatException nfe) {
+			return -1;
 		}
 	}
 
@@ -187,7 +282,28 @@ public class ScryfallApi {
 							connection.setRequestProperty("Accept-Encoding", "gzip");
 							connection.setRequestProperty("user-agent", "emi.lib.mtg.scryfall via java.net");
 
-							if (connection.getResponseCode() != 200) {
+							Transfer transfer = request.transfer;
+							if (transfer != null && transfer.offset > 0) {
+								connection.setRequestProperty("Range", String.format("bytes=%d-", transfer.offset));
+								if (transfer.validators.etag != null) {
+									connection.setRequestProperty("If-Range", transfer.validators.etag);
+								} else if (transfer.validators.lastModified != null) {
+									connection.setRequestProperty("If-Range", transfer.validators.lastModified);
+								}
+							} else if (transfer != null) {
+								if (transfer.validators.etag != null) connection.setRequestProperty("If-None-Match", transfer.validators.etag);
+								if (transfer.validators.lastModified != null) connection.setRequestProperty("If-Modified-Since", transfer.validators.lastModified);
+							}
+
+							if (transfer != null && transfer.offset == 0 && connection.getResponseCode() == HttpsURLConnection.HTTP_NOT_MODIFIED) {
+								connection.disconnect();
+								request.complete(null);
+								nextRequest = System.currentTimeMillis() + REQUEST_PAUSE;
+								continue;
+							}
+
+							boolean partial = transfer != null && transfer.offset > 0 && connection.getResponseCode() == HttpsURLConnection.HTTP_PARTIAL;
+							if (connection.getResponseCode() != 200 && !partial) {
 								InputStream err = connection.getErrorStream();
 								if ("gzip".equals(connection.getContentEncoding())) err = new GZIPInputStream(err);
 
@@ -201,7 +317,17 @@ public class ScryfallApi {
 							}
 
 							InputStream input = connection.getInputStream();
-							if ("gzip".equals(connection.getContentEncoding())) input = new GZIPInputStream(input);
+
+							if (transfer != null) {
+								transfer.validators.etag = connection.getHeaderField("ETag");
+								transfer.validators.lastModified = connection.getHeaderField("Last-Modified");
+								transfer.partial = partial;
+								transfer.length = partial ? contentRangeLength(connection.getHeaderField("Content-Range")) : connection.getContentLengthLong();
+								transfer.encoding = connection.getContentEncoding();
+							} else if ("gzip".equals(connection.getContentEncoding())) {
+								input = new GZIPInputStream(input);
+							}
+
 							if (request.reporter != null) input = new ReportingWrapper(input, request.reporter);
 
 							request.complete(input);
@@ -224,7 +350,21 @@ public class ScryfallApi {
 	}
 
 	public CompletableFuture<InputStream> getURL(URL url, String contentType, LongConsumer reporter, boolean preempt) {
-		Request request = new Request(url, contentType, reporter);
+		return getURL(url, contentType, reporter, null, preempt);
+	}
+
+	/**
+	 * Requests a resource as a raw transfer. See Transfer for details.
+	 *
+	 * @param url The resource to transfer.
+	 * @param contentType The preferred content type of the resource.
+	 * @param reporter Receives the number of bytes transferred so far, not counting the offset. May be null.
+	 * @param transfer Describes what to request, and receives a description of the response.
+	 * @param preempt If true, jump the request queue.
+	 * @return A future completing with the raw response body, or with null if the resource hasn't been modified.
+	 */
+	public CompletableFuture<InputStream> getURL(URL url, String contentType, LongConsumer reporter, Transfer transfer, boolean preempt) {
+		Request request = new Request(url, contentType, reporter, transfer);
 
 		if (preempt) {
 			requestQueue.addFirst(request);
@@ -240,19 +380,21 @@ public class ScryfallApi {
 				.thenApply(is -> GSON.fromJson(new InputStreamReader(is, StandardCharsets.UTF_8), type));
 	}
 
+	private static IOException unwrap(ExecutionException e) {
+		if (e.getCause() instanceof IOException) {
+			return (IOException) e.getCause();
+		} else {
+			return new IOException(e.getCause());
+		}
+	}
+
 	public <T> T requestJson(URL url, Type type, LongConsumer reporter) throws IOException {
 		try {
 			return this.<T>requestJsonAsync(url, type, reporter).get();
 		} catch (InterruptedException e) {
 			return null;
 		} catch (ExecutionException e) {
-			if (e.getCause() instanceof HttpException) {
-				throw (HttpException) e.getCause();
-			} else if (e.getCause() instanceof IOException) {
-				throw (IOException) e.getCause();
-			} else {
-				throw new IOException(e.getCause());
-			}
+			throw unwrap(e);
 		}
 	}
 
@@ -276,15 +418,46 @@ public class ScryfallApi {
 		return requestJson(URL_BULK, BulkDataList.class, null);
 	}
 
-	public List<Card> defaultCardsBulk(DoubleConsumer progress) throws IOException {
+	public BulkDataList.Entry defaultCardsEntry() throws IOException {
 		BulkDataList bulk = bulkData();
 		BulkDataList.Entry defaultCards = bulk.data.stream().filter(x -> x.type == BulkDataType.DefaultCards).findAny().orElse(null);
 
 		if (defaultCards == null) throw new AssertionError(new IOException("Couldn't find scryfall bulk default card data URI!"));
 
+		return defaultCards;
+	}
+
+	public List<Card> defaultCardsBulk(DoubleConsumer progress) throws IOException {
+		BulkDataList.Entry defaultCards = defaultCardsEntry();
 		return requestJson(defaultCards.downloadUri.toURL(), new TypeToken<List<Card>>(){}.getType(), l -> progress.accept((double) l / defaultCards.size));
 	}
 
+	/**
+	 * Opens Scryfall's default cards bulk data file as a stream of individual cards. Unlike defaultCardsBulk, cards are
+	 * parsed on demand straight off the network connection, so only one card needs to be in memory at a time.
+	 *
+	 * @param progress Receives the fraction of the bulk file downloaded so far.
+	 * @return A stream over the bulk file's cards. The caller is responsible for closing it.
+	 * @throws IOException If the bulk data couldn't be located or the download couldn't be started.
+	 */
+	public CardStream defaultCardsBulkStream(DoubleConsumer progress) throws IOException {
+		BulkDataList.Entry defaultCards = defaultCardsEntry();
+		return new CardStream(await(getURL(defaultCards.downloadUri.toURL(), "application/json", l -> progress.accept((double) l / defaultCards.size), false)));
+	}
+
+	/**
+	 * Waits for a request to complete, unwrapping any IOException it failed with.
+	 */
+	public static <T> T await(CompletableFuture<T> request) throws IOException {
+		try {
+			return request.get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting on a Scryfall request");
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+
 	public PagedList<Card> query(String syntax) throws IOException {
 		return query(syntax, "prints", false, false);
 	}
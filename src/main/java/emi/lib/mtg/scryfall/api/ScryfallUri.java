@@ -0,0 +1,92 @@
+package emi.lib.mtg.scryfall.api;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * A compact, unparsed URL. Cards carry a dozen or so URLs each, nearly all of which start with one of a handful of
+ * Scryfall prefixes, and nearly none of which are ever used. This splits them into a shared prefix and the rest, and
+ * only builds a java.net.URL when someone actually asks for one.
+ *
+ * For image URLs, the rest is identical between all the JPEG sizes of the same image, so serializers which deduplicate
+ * strings only need to store it once per card.
+ */
+public final class ScryfallUri {
+	private static final String[] PREFIXES = {
+			"https://cards.scryfall.io/small/",
+			"https://cards.scryfall.io/normal/",
+			"https://cards.scryfall.io/large/",
+			"https://cards.scryfall.io/png/",
+			"https://cards.scryfall.io/art_crop/",
+			"https://cards.scryfall.io/border_crop/",
+			"https://cards.scryfall.io/",
+			"https://api.scryfall.com/cards/",
+			"https://api.scryfall.com/sets/",
+			"https://api.scryfall.com/",
+			"https://scryfall.com/card/",
+			"https://scryfall.com/sets/",
+			"https://scryfall.com/",
+			"https://svgs.scryfall.io/",
+	};
+
+	/**
+	 * @param uri A complete URL.
+	 * @return The URL split on the longest known prefix, or with an empty prefix if none match.
+	 */
+	public static ScryfallUri of(String uri) {
+		for (String prefix : PREFIXES) {
+			if (uri.startsWith(prefix)) return new ScryfallUri(prefix, uri.substring(prefix.length()));
+		}
+
+		return new ScryfallUri("", uri);
+	}
+
+	/**
+	 * @param prefix The first part of a URL, as returned by prefix().
+	 * @param rest The rest of the URL, as returned by rest().
+	 * @return The URL, sharing the canonical instance of prefix if it's one we know.
+	 */
+	public static ScryfallUri of(String prefix, String rest) {
+		for (String known : PREFIXES) {
+			if (known.equals(prefix)) return new ScryfallUri(known, rest);
+		}
+
+		return new ScryfallUri(prefix, rest);
+	}
+
+	private final String prefix, rest;
+
+	private ScryfallUri(String prefix, String rest) {
+		this.prefix = prefix;
+		this.rest = rest;
+	}
+
+	public String prefix() {
+		return prefix;
+	}
+
+	public String rest() {
+		return rest;
+	}
+
+	public URL toURL() throws MalformedURLException {
+		return new URL(toString());
+	}
+
+	@Override
+	public String toString() {
+		return prefix.isEmpty() ? rest : prefix + rest;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ScryfallUri)) return false;
+		return toString().equals(o.toString());
+	}
+
+	@Override
+	public int hashCode() {
+		return toString().hashCode();
+	}
+}
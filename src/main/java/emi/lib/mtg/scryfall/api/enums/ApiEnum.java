@@ -9,15 +9,15 @@ import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public interface ApiEnum {
 	String serialized();
 
 	class Serialization {
-		private static final Map<Class<? extends ApiEnum>, Map<String, ? extends ApiEnum>> REV_MAPS = new HashMap<>();
+		private static final Map<Class<? extends ApiEnum>, Map<String, ? extends ApiEnum>> REV_MAPS = new ConcurrentHashMap<>();
 
 		public static <T extends ApiEnum> Map<String, T> revMap(Class<T> type) {
 			return (Map<String, T>) revMapRaw(type);
@@ -42,6 +42,33 @@ public interface ApiEnum {
 			Map<String, T> map = revMap(type);
 			return map.getOrDefault(name.toLowerCase(), map.get("unrecognized"));
 		}
+
+		private static final Map<Class<? extends ApiEnum>, Map<String, ApiEnum>> SPELLINGS = new ConcurrentHashMap<>();
+
+		/**
+		 * Looks up an enum value by any spelling Scryfall or our serializers use for it, ignoring case and underscores.
+		 * Each distinct spelling is only normalized once; after that, it's a single hash lookup. Spellings which don't
+		 * match any value are reported the first time they're seen, and map to the type's unrecognized value.
+		 */
+		public static <T extends ApiEnum> T parse(Class<T> type, String spelling) {
+			Map<String, ApiEnum> spellings = SPELLINGS.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+			ApiEnum value = spellings.get(spelling);
+
+			if (value == null) {
+				Map<String, T> map = revMap(type);
+				String name = spelling.toLowerCase().replace("_", "");
+				value = map.get(name);
+
+				if (value == null) {
+					System.err.println("WARNING: Unrecognized " + type.getSimpleName() + " \"" + name + "\"! Errors may ensue!");
+					value = map.get("unrecognized");
+				}
+
+				spellings.put(spelling, value);
+			}
+
+			return type.cast(value);
+		}
 	}
 
 	static TypeAdapterFactory typeAdapterFactory() {
@@ -52,8 +79,7 @@ public interface ApiEnum {
 					return null;
 				}
 
-				final Map<String, T> revMap = (Map<String, T>) Serialization.revMapRaw((Class<? extends ApiEnum>) typeToken.getRawType());
-				T unrecognized = revMap.get("unrecognized");
+				final Class<? extends ApiEnum> type = (Class<? extends ApiEnum>) typeToken.getRawType();
 
 				return new TypeAdapter<T>() {
 					@Override
@@ -67,26 +93,17 @@ public interface ApiEnum {
 
 					@Override
 					public T read(JsonReader jsonReader) throws IOException {
-						String name;
 						switch (jsonReader.peek()) {
 							case NULL:
+								jsonReader.nextNull();
 								return null;
 							case NAME:
-								name = jsonReader.nextName().toLowerCase().replace("_", "");
-								break;
+								return (T) Serialization.parse(type, jsonReader.nextName());
 							case STRING:
-								name = jsonReader.nextString().toLowerCase().replace("_", "");
-								break;
+								return (T) Serialization.parse(type, jsonReader.nextString());
 							default:
 								throw new IOException("Unexpected token");
 						}
-
-						if (!revMap.containsKey(name)) {
-							System.err.println("WARNING: Unrecognized " + typeToken.getRawType().getSimpleName() + " \"" + name + "\"! Errors may ensue!");
-							return unrecognized;
-						}
-
-						return revMap.get(name);
 					}
 				};
 			}
@@ -0,0 +1,244 @@
+package emi.lib.mtg.scryfall.serde;
+
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A container of independently compressed blocks, so that readers can decompress and decode them in parallel.
+ *
+ * The file starts with MAGIC and the ID of the Compression codec used, followed by the compressed blocks back to back.
+ * Block 0 is the header; the rest hold cards. After the last block comes an uncompressed MessagePack footer listing the
+ * offset, compressed size, uncompressed size and card count of every block. The file ends with the footer's offset as a
+ * big-endian long, followed by MAGIC again.
+ */
+class BlockFile {
+	static final byte[] MAGIC = { 'S', 'F', 'B', 'K' };
+	private static final int TRAILER_SIZE = Long.BYTES + 4;
+
+	static class Block {
+		final long offset;
+		final int compressedSize, size, cards;
+
+		Block(long offset, int compressedSize, int size, int cards) {
+			this.offset = offset;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.cards = cards;
+		}
+	}
+
+	/**
+	 * @return True if the file starts with MAGIC.
+	 */
+	static boolean detect(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+			while (magic.hasRemaining() && channel.read(magic) >= 0);
+			return !magic.hasRemaining() && ByteBuffer.wrap(MAGIC).equals(magic.flip());
+		}
+	}
+
+	static class Writer implements AutoCloseable {
+		private static class Pending {
+			final Future<byte[]> compressed;
+			final int size, cards;
+
+			Pending(Future<byte[]> compressed, int size, int cards) {
+				this.compressed = compressed;
+				this.size = size;
+				this.cards = cards;
+			}
+		}
+
+		private final FileChannel channel;
+		private final Compression compression;
+		private final List<Block> blocks;
+		private final Deque<Pending> pending;
+		private final int maxPending;
+		private long position;
+
+		Writer(Path file, Compression compression) throws IOException {
+			this.channel = FileChannel.open(file,
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.compression = compression;
+			this.blocks = new ArrayList<>();
+			this.pending = new ArrayDeque<>();
+			this.maxPending = ForkJoinPool.getCommonPoolParallelism() * 2;
+			this.position = 0;
+
+			try {
+				ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1);
+				header.put(MAGIC).put(compression.id).flip();
+				write(header);
+			} catch (IOException ioe) {
+				channel.close();
+				throw ioe;
+			}
+		}
+
+		private void write(ByteBuffer data) throws IOException {
+			while (data.hasRemaining()) position += channel.write(data);
+		}
+
+		private void append(byte[] compressed, int size, int cards) throws IOException {
+			long offset = position;
+			write(ByteBuffer.wrap(compressed));
+			blocks.add(new Block(offset, compressed.length, size, cards));
+		}
+
+		private void drain(int keep) throws IOException {
+			try {
+				while (pending.size() > keep) {
+					Pending next = pending.removeFirst();
+					append(next.compressed.get(), next.size, next.cards);
+				}
+			} catch (InterruptedException ie) {
+				throw new InterruptedIOException("Interrupted while compressing blocks");
+			} catch (ExecutionException ee) {
+				if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+				throw new IOException(ee.getCause());
+			}
+		}
+
+		/**
+		 * Compresses and appends a block. If the codec compresses in parallel, the block is compressed in the background
+		 * and written once every block before it has been.
+		 *
+		 * @param data The block's uncompressed contents. Must not be modified afterward.
+		 * @param cards The number of cards in the block, or 0 for the header.
+		 */
+		void writeBlock(byte[] data, int cards) throws IOException {
+			if (compression.parallel()) {
+				Future<byte[]> compressed = ForkJoinPool.commonPool().submit(() -> compression.compress(data));
+				pending.addLast(new Pending(compressed, data.length, cards));
+				drain(maxPending);
+			} else {
+				append(compression.compress(data), data.length, cards);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				drain(0);
+
+				long footer = position;
+				try (MessageBufferPacker packer = org.msgpack.core.MessagePack.newDefaultBufferPacker()) {
+					packer.packArrayHeader(blocks.size() * 4);
+					for (Block block : blocks) {
+						packer.packLong(block.offset);
+						packer.packInt(block.compressedSize);
+						packer.packInt(block.size);
+						packer.packInt(block.cards);
+					}
+					write(ByteBuffer.wrap(packer.toByteArray()));
+				}
+
+				ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+				trailer.putLong(footer).put(MAGIC).flip();
+				write(trailer);
+			} finally {
+				pending.forEach(p -> p.compressed.cancel(true));
+				channel.close();
+			}
+		}
+	}
+
+	static class Reader implements AutoCloseable {
+		private final Path file;
+		private final FileChannel channel;
+		private final List<Block> blocks;
+		private final Compression compression;
+
+		Reader(Path file) throws IOException {
+			this.file = file;
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+			try {
+				long size = channel.size();
+				if (size < MAGIC.length + 1 + TRAILER_SIZE) throw new IOException("Block file " + file + " is truncated");
+
+				ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+				long footer = trailer.getLong();
+				byte[] magic = new byte[MAGIC.length];
+				trailer.get(magic);
+				if (!ByteBuffer.wrap(MAGIC).equals(ByteBuffer.wrap(magic))) {
+					throw new IOException("Block file " + file + " is truncated or corrupt");
+				}
+				if (footer < MAGIC.length + 1 || footer > size - TRAILER_SIZE) {
+					throw new IOException("Block file " + file + " has a bad footer offset");
+				}
+
+				this.blocks = new ArrayList<>();
+				ByteBuffer index = read(footer, (int) (size - TRAILER_SIZE - footer));
+				try (MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(index)) {
+					int fields = unpacker.unpackArrayHeader();
+					if (fields % 4 != 0 || fields == 0) {
+						throw new IOException("Block file " + file + " has a malformed block index");
+					}
+					for (int i = 0; i < fields; i += 4) {
+						long offset = unpacker.unpackLong();
+						int compressedSize = unpacker.unpackInt();
+						int blockSize = unpacker.unpackInt();
+						int cards = unpacker.unpackInt();
+						blocks.add(new Block(offset, compressedSize, blockSize, cards));
+					}
+				}
+
+				this.compression = Compression.byId(read(MAGIC.length, 1).get());
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		private ByteBuffer read(long offset, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offset + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of block file " + file);
+				}
+			}
+			buffer.flip();
+			return buffer;
+		}
+
+		/**
+		 * @return Every block in the file, starting with the header.
+		 */
+		List<Block> blocks() {
+			return blocks;
+		}
+
+		/**
+		 * Reads and decompresses a block. Safe to call from several threads at once.
+		 */
+		byte[] readBlock(Block block) throws IOException {
+			ByteBuffer compressed = read(block.offset, block.compressedSize);
+			try {
+				return compression.decompress(compressed.array(), block.size);
+			} catch (IOException ioe) {
+				throw new IOException(String.format("Block at offset %d of %s is corrupt", block.offset, file), ioe);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,379 @@
+package emi.lib.mtg.scryfall.serde;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * How data files are compressed, independent of how they're serialized. Compression trades disk space for CPU time:
+ * Gzip is the smallest, Fast is a little bigger but much quicker to write, Lz4 is bigger again but much quicker to read,
+ * and None skips compression entirely. ParallelGzip writes the same format as Gzip, but compresses on every core.
+ *
+ * Streams written by compress(OutputStream) start with MAGIC and the codec's ID, so decompress(InputStream) can tell
+ * which codec to use. Plain gzip streams, as older versions wrote, are recognized too.
+ */
+public enum Compression {
+	None (0, -1),
+	Fast (1, Deflater.BEST_SPEED),
+	Gzip (2, Deflater.DEFAULT_COMPRESSION),
+	ParallelGzip (3, Deflater.DEFAULT_COMPRESSION),
+	Lz4 (4, -1);
+
+	private static final byte[] MAGIC = { 'S', 'F', 'C', 'Z' };
+	private static final int GZIP_MAGIC = 0x8B1F;
+	private static final int STREAM_BLOCK_SIZE = 1 << 20;
+
+	final byte id;
+	private final int level;
+
+	Compression(int id, int level) {
+		this.id = (byte) id;
+		this.level = level;
+	}
+
+	static Compression byId(int id) throws IOException {
+		for (Compression compression : values()) {
+			if (compression.id == id) return compression;
+		}
+
+		throw new IOException(String.format("Unrecognized compression codec %d; was this file written by a newer version?", id));
+	}
+
+	/**
+	 * @return True if blocks should be compressed on several threads at once.
+	 */
+	boolean parallel() {
+		return this == ParallelGzip;
+	}
+
+	/**
+	 * Compresses a single block of data. Deflate-based codecs write a zlib stream rather than a gzip one, since blocks
+	 * live inside our own container.
+	 */
+	byte[] compress(byte[] data) {
+		switch (this) {
+			case None:
+				return data;
+			case Lz4:
+				return emi.lib.mtg.scryfall.serde.Lz4.compress(data);
+			default:
+				Deflater deflater = new Deflater(level);
+				try {
+					deflater.setInput(data);
+					deflater.finish();
+
+					ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+					byte[] buffer = new byte[64 * 1024];
+					while (!deflater.finished()) {
+						int n = deflater.deflate(buffer);
+						out.write(buffer, 0, n);
+					}
+					return out.toByteArray();
+				} finally {
+					deflater.end();
+				}
+		}
+	}
+
+	/**
+	 * Decompresses a single block written by compress(byte[]).
+	 *
+	 * @param data The compressed block.
+	 * @param size The size of the block once decompressed.
+	 * @throws IOException If the block is corrupt.
+	 */
+	byte[] decompress(byte[] data, int size) throws IOException {
+		switch (this) {
+			case None:
+				if (data.length != size) throw new IOException(String.format("Uncompressed block is %d bytes, but should be %d", data.length, size));
+				return data;
+			case Lz4:
+				return emi.lib.mtg.scryfall.serde.Lz4.decompress(data, size);
+			default:
+				Inflater inflater = new Inflater();
+				try {
+					inflater.setInput(data);
+					byte[] out = new byte[size];
+					int n = 0;
+					while (!inflater.finished()) {
+						int read = inflater.inflate(out, n, out.length - n);
+						if (read == 0 && (n == out.length || inflater.needsInput() || inflater.needsDictionary())) break;
+						n += read;
+					}
+					if (n != out.length || !inflater.finished()) throw new IOException(String.format("Deflated block decompressed to %d bytes, but should have been %d", n, size));
+					return out;
+				} catch (DataFormatException dfe) {
+					throw new IOException("Corrupt deflated block", dfe);
+				} finally {
+					inflater.end();
+				}
+		}
+	}
+
+	/**
+	 * Wraps a stream so that everything written to it is compressed with this codec, after a short header recording
+	 * which codec that is.
+	 */
+	public OutputStream compress(OutputStream out) throws IOException {
+		out.write(MAGIC);
+		out.write(id);
+
+		switch (this) {
+			case None:
+				return new BufferedOutputStream(out, 64 * 1024);
+			case Lz4:
+				return new Lz4OutputStream(out);
+			case ParallelGzip:
+				return new ParallelGzipOutputStream(out);
+			default:
+				return new GZIPOutputStream(out, 64 * 1024) {
+					{
+						def.setLevel(level);
+					}
+				};
+		}
+	}
+
+	/**
+	 * Wraps a stream written by compress(OutputStream), or a plain gzip stream, so that reading from it decompresses.
+	 *
+	 * @throws IOException If the stream doesn't start with a header we recognize.
+	 */
+	public static InputStream decompress(InputStream in) throws IOException {
+		in = new BufferedInputStream(in, 64 * 1024);
+		in.mark(MAGIC.length + 1);
+
+		byte[] header = new byte[MAGIC.length + 1];
+		int n = 0;
+		for (int read = 0; n < header.length && read >= 0; n += Math.max(read, 0)) read = in.read(header, n, header.length - n);
+
+		if (n >= 2 && ((header[0] & 0xFF) | (header[1] & 0xFF) << 8) == GZIP_MAGIC) {
+			in.reset();
+			return new GZIPInputStream(in, 64 * 1024);
+		}
+
+		if (n < header.length || !Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+			throw new IOException("Unrecognized data file compression");
+		}
+
+		switch (byId(header[MAGIC.length])) {
+			case None:
+				return in;
+			case Lz4:
+				return new Lz4InputStream(in);
+			default:
+				return new GZIPInputStream(in, 64 * 1024);
+		}
+	}
+
+	private static IOException unwrap(ExecutionException ee) {
+		return ee.getCause() instanceof IOException ? (IOException) ee.getCause() : new IOException(ee.getCause());
+	}
+
+	/**
+	 * Buffers data into large blocks, and compresses each into its own gzip member on the common ForkJoinPool. The
+	 * members are written in order, so the result is an ordinary multi-member gzip stream.
+	 */
+	private static class ParallelGzipOutputStream extends OutputStream {
+		private final OutputStream out;
+		private final Deque<Future<byte[]>> pending;
+		private final int maxPending;
+		private byte[] buffer;
+		private int length;
+		private boolean empty;
+
+		ParallelGzipOutputStream(OutputStream out) {
+			this.out = out;
+			this.pending = new ArrayDeque<>();
+			this.maxPending = ForkJoinPool.getCommonPoolParallelism() * 2;
+			this.buffer = new byte[STREAM_BLOCK_SIZE];
+			this.length = 0;
+			this.empty = true;
+		}
+
+		private static byte[] member(byte[] data, int length) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4 + 64);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+				gzip.write(data, 0, length);
+			}
+			return out.toByteArray();
+		}
+
+		private void drain(int keep) throws IOException {
+			try {
+				while (pending.size() > keep) out.write(pending.removeFirst().get());
+			} catch (InterruptedException ie) {
+				throw new InterruptedIOException("Interrupted while compressing");
+			} catch (ExecutionException ee) {
+				throw unwrap(ee);
+			}
+		}
+
+		private void submit() throws IOException {
+			// Even an empty stream needs one member to be valid gzip.
+			if (length == 0 && !empty) return;
+			empty = false;
+
+			final byte[] data = buffer;
+			final int size = length;
+			pending.addLast(ForkJoinPool.commonPool().submit(() -> member(data, size)));
+			buffer = new byte[STREAM_BLOCK_SIZE];
+			length = 0;
+
+			drain(maxPending);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (length == buffer.length) submit();
+			buffer[length++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (length == buffer.length) submit();
+				int n = Math.min(len, buffer.length - length);
+				System.arraycopy(b, off, buffer, length, n);
+				length += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				submit();
+				drain(0);
+			} finally {
+				pending.forEach(f -> f.cancel(true));
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Splits data into blocks and compresses each with Lz4. Each block is written as its uncompressed size, its
+	 * compressed size, then its data; a compressed size of -1 means the block didn't compress and is stored as-is. An
+	 * uncompressed size of 0 marks the end of the stream.
+	 */
+	private static class Lz4OutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final byte[] buffer;
+		private int length;
+
+		Lz4OutputStream(OutputStream out) {
+			this.out = new DataOutputStream(out);
+			this.buffer = new byte[STREAM_BLOCK_SIZE];
+			this.length = 0;
+		}
+
+		private void flushBlock() throws IOException {
+			if (length == 0) return;
+
+			byte[] compressed = emi.lib.mtg.scryfall.serde.Lz4.compress(buffer, 0, length);
+			out.writeInt(length);
+			if (compressed.length < length) {
+				out.writeInt(compressed.length);
+				out.write(compressed);
+			} else {
+				out.writeInt(-1);
+				out.write(buffer, 0, length);
+			}
+			length = 0;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (length == buffer.length) flushBlock();
+			buffer[length++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (length == buffer.length) flushBlock();
+				int n = Math.min(len, buffer.length - length);
+				System.arraycopy(b, off, buffer, length, n);
+				length += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flushBlock();
+				out.writeInt(0);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private static class Lz4InputStream extends InputStream {
+		private final DataInputStream in;
+		private byte[] block;
+		private int position;
+		private boolean finished;
+
+		Lz4InputStream(InputStream in) {
+			this.in = new DataInputStream(in);
+			this.block = new byte[0];
+			this.position = 0;
+			this.finished = false;
+		}
+
+		private boolean fill() throws IOException {
+			while (position == block.length) {
+				if (finished) return false;
+
+				int size = in.readInt();
+				if (size == 0) {
+					finished = true;
+					return false;
+				}
+
+				int compressedSize = in.readInt();
+				byte[] data = new byte[compressedSize < 0 ? size : compressedSize];
+				in.readFully(data);
+				block = compressedSize < 0 ? data : emi.lib.mtg.scryfall.serde.Lz4.decompress(data, size);
+				position = 0;
+			}
+
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fill() ? block[position++] & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			if (!fill()) return -1;
+
+			int n = Math.min(len, block.length - position);
+			System.arraycopy(block, position, b, off, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -1,23 +1,26 @@
 package emi.lib.mtg.scryfall.serde;
 
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import emi.lib.mtg.scryfall.api.ScryfallApi;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 public class Json implements ScryfallSerde {
 	private final Gson gson;
+	private final Compression compression;
+	private final TypeAdapter<emi.lib.mtg.scryfall.api.Set> setAdapter;
+	private final TypeAdapter<emi.lib.mtg.scryfall.api.Card> cardAdapter;
 	private JsonWriter writer;
 	private JsonReader reader;
 	private State readState, writeState;
@@ -27,7 +30,14 @@ public class Json implements ScryfallSerde {
 	}
 
 	public Json(Gson gson) {
+		this(gson, Compression.Gzip);
+	}
+
+	public Json(Gson gson, Compression compression) {
 		this.gson = gson;
+		this.compression = compression;
+		this.setAdapter = gson.getAdapter(emi.lib.mtg.scryfall.api.Set.class);
+		this.cardAdapter = gson.getAdapter(emi.lib.mtg.scryfall.api.Card.class);
 		this.writer = null;
 		this.reader = null;
 		this.readState = State.Inactive;
@@ -52,7 +62,8 @@ public class Json implements ScryfallSerde {
 	@Override
 	public void startWriting(Path file) throws IOException {
 		if (writer != null) writer.close();
-		writer = new JsonWriter(new PrintWriter(new GZIPOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))));
+		// Not gson.newJsonWriter(), which would pretty-print; data files are never read by people.
+		writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(compression.compress(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)), StandardCharsets.UTF_8)));
 		writer.beginObject();
 		writeState = State.Header;
 	}
@@ -69,7 +80,7 @@ public class Json implements ScryfallSerde {
 	public void writeSet(emi.lib.mtg.scryfall.api.Set set) throws IOException {
 		checkWriteState(State.Sets);
 		writer.name(set.code);
-		gson.toJson(set, emi.lib.mtg.scryfall.api.Set.class, writer);
+		setAdapter.write(writer, set);
 	}
 
 	@Override
@@ -92,7 +103,7 @@ public class Json implements ScryfallSerde {
 	public void writeCard(emi.lib.mtg.scryfall.api.Card card) throws IOException {
 		checkWriteState(State.Cards);
 		writer.name(card.id.toString());
-		gson.toJson(card, emi.lib.mtg.scryfall.api.Card.class, writer);
+		cardAdapter.write(writer, card);
 	}
 
 	@Override
@@ -114,7 +125,7 @@ public class Json implements ScryfallSerde {
 	@Override
 	public void startReading(Path file) throws IOException {
 		if (reader != null) reader.close();
-		reader = gson.newJsonReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8));
+		reader = gson.newJsonReader(new InputStreamReader(Compression.decompress(Files.newInputStream(file)), StandardCharsets.UTF_8));
 		reader.beginObject();
 		readState = State.Header;
 	}
@@ -137,7 +148,7 @@ public class Json implements ScryfallSerde {
 	public emi.lib.mtg.scryfall.api.Set nextSet() throws IOException, IllegalStateException {
 		checkReadState(State.Sets);
 		String setCode = reader.nextName();
-		emi.lib.mtg.scryfall.api.Set set = gson.fromJson(reader, emi.lib.mtg.scryfall.api.Set.class);
+		emi.lib.mtg.scryfall.api.Set set = setAdapter.read(reader);
 		ScryfallSerde.expect(setCode, set.code);
 		return set;
 	}
@@ -168,7 +179,7 @@ public class Json implements ScryfallSerde {
 	public emi.lib.mtg.scryfall.api.Card nextCard() throws IOException {
 		checkReadState(State.Cards);
 		String id = reader.nextName();
-		emi.lib.mtg.scryfall.api.Card card = gson.fromJson(reader, emi.lib.mtg.scryfall.api.Card.class);
+		emi.lib.mtg.scryfall.api.Card card = cardAdapter.read(reader);
 		ScryfallSerde.expect(id, card.id.toString());
 		return card;
 	}
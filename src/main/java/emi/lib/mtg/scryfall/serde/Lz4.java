@@ -0,0 +1,148 @@
+package emi.lib.mtg.scryfall.serde;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure-Java compressor and decompressor for the LZ4 block format. The compressor is the simple greedy one: a single
+ * hash table of recent four-byte sequences, no chaining. It compresses worse than deflate, but decompresses several
+ * times faster, which is the point.
+ *
+ * Each block is a series of sequences, each a token byte (literal length and match length, four bits each), any
+ * extra literal length bytes, the literals, a little-endian two-byte match offset and any extra match length bytes.
+ * The last sequence has literals only. See https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md.
+ */
+final class Lz4 {
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MF_LIMIT = 12;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_LOG = 14;
+
+	private Lz4() {
+	}
+
+	private static int readInt(byte[] data, int i) {
+		return (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | (data[i + 3] & 0xFF) << 24;
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	private static int writeLength(byte[] dst, int op, int length) {
+		for (; length >= 255; length -= 255) dst[op++] = (byte) 255;
+		dst[op++] = (byte) length;
+		return op;
+	}
+
+	private static int writeSequence(byte[] dst, int op, byte[] src, int literals, int literalLength, int offset, int matchLength) {
+		int token = op++;
+		dst[token] = (byte) (Math.min(literalLength, 15) << 4);
+		if (literalLength >= 15) op = writeLength(dst, op, literalLength - 15);
+		System.arraycopy(src, literals, dst, op, literalLength);
+		op += literalLength;
+
+		if (matchLength > 0) {
+			dst[op++] = (byte) offset;
+			dst[op++] = (byte) (offset >>> 8);
+			dst[token] |= (byte) Math.min(matchLength - MIN_MATCH, 15);
+			if (matchLength - MIN_MATCH >= 15) op = writeLength(dst, op, matchLength - MIN_MATCH - 15);
+		}
+
+		return op;
+	}
+
+	static byte[] compress(byte[] src) {
+		return compress(src, 0, src.length);
+	}
+
+	static byte[] compress(byte[] src, int offset, int length) {
+		final int end = offset + length;
+		byte[] dst = new byte[length + length / 255 + 16];
+		int op = 0, anchor = offset;
+
+		if (length > MF_LIMIT) {
+			int[] table = new int[1 << HASH_LOG];
+			Arrays.fill(table, -1);
+
+			final int matchLimit = end - LAST_LITERALS, searchLimit = end - MF_LIMIT;
+			for (int ip = offset; ip < searchLimit; ) {
+				int sequence = readInt(src, ip), h = hash(sequence);
+				int ref = table[h];
+				table[h] = ip;
+
+				if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+					++ip;
+					continue;
+				}
+
+				while (ip > anchor && ref > offset && src[ip - 1] == src[ref - 1]) {
+					--ip;
+					--ref;
+				}
+
+				int matchLength = MIN_MATCH;
+				while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) ++matchLength;
+
+				op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, matchLength);
+				ip += matchLength;
+				anchor = ip;
+			}
+		}
+
+		op = writeSequence(dst, op, src, anchor, end - anchor, 0, 0);
+		return Arrays.copyOf(dst, op);
+	}
+
+	private static int readLength(byte[] src, int[] ip) {
+		int length = 0, b;
+		do {
+			b = src[ip[0]++] & 0xFF;
+			length += b;
+		} while (b == 255);
+		return length;
+	}
+
+	/**
+	 * @param src A compressed block.
+	 * @param size The size of the block once decompressed.
+	 * @throws IOException If the block is corrupt, or doesn't decompress to exactly size bytes.
+	 */
+	static byte[] decompress(byte[] src, int size) throws IOException {
+		byte[] dst = new byte[size];
+		int[] ip = { 0 };
+		int op = 0;
+
+		try {
+			while (true) {
+				int token = src[ip[0]++] & 0xFF;
+
+				int literalLength = token >>> 4;
+				if (literalLength == 15) literalLength += readLength(src, ip);
+				System.arraycopy(src, ip[0], dst, op, literalLength);
+				ip[0] += literalLength;
+				op += literalLength;
+
+				if (ip[0] == src.length) break;
+
+				int offset = (src[ip[0]++] & 0xFF) | (src[ip[0]++] & 0xFF) << 8;
+				int matchLength = token & 0xF;
+				if (matchLength == 15) matchLength += readLength(src, ip);
+				matchLength += MIN_MATCH;
+
+				int ref = op - offset;
+				if (offset == 0 || ref < 0 || op + matchLength > size) throw new IOException("Corrupt LZ4 block");
+
+				// Matches may overlap their own output, e.g. a run of one byte, so this can't be an arraycopy.
+				for (int i = 0; i < matchLength; ++i) dst[op + i] = dst[ref + i];
+				op += matchLength;
+			}
+		} catch (ArrayIndexOutOfBoundsException aioobe) {
+			throw new IOException("Corrupt LZ4 block", aioobe);
+		}
+
+		if (op != size) throw new IOException(String.format("LZ4 block decompressed to %d bytes, but should have been %d", op, size));
+		return dst;
+	}
+}
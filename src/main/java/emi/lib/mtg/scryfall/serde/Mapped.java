@@ -0,0 +1,547 @@
+package emi.lib.mtg.scryfall.serde;
+
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * An uncompressed data file laid out to be memory-mapped and read in place, so that a card can be found and decoded
+ * without reading anything else, and several processes mapping the same file share one copy in the page cache.
+ *
+ * The file starts with a fixed-size header of HEADER_FIELDS big-endian ints: MAGIC, the format version, the set count,
+ * the card count, the name index entry count, the offsets of the schema, sets, cards, ID index, print index, name index
+ * and key pool, then the file's length. Sets and cards are records: a length, then a MessagePack object written
+ * against the schema with its own string dictionary. The ID index holds the most and least significant bits of every
+ * card's ID and its record offset, sorted by ID. The print and name indices hold a key offset and a record offset for
+ * every card, sorted by key: "set/collector number" for the print index, and the card's name and each of its face names
+ * for the name index. Keys are a length and UTF-8 bytes in the key pool. Every offset is an int, so files are limited
+ * to 2 GB.
+ */
+public class Mapped implements ScryfallSerde {
+	private static final int MAGIC = 0x53464D4D;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_FIELDS = 13;
+	private static final int HEADER_SIZE = HEADER_FIELDS * Integer.BYTES;
+	private static final int ID_ENTRY_SIZE = 2 * Long.BYTES + Integer.BYTES;
+	private static final int KEY_ENTRY_SIZE = 2 * Integer.BYTES;
+	private static final int CARDS_PER_TASK = 1024;
+
+	private static final Comparator<byte[]> KEY_ORDER = (a, b) -> {
+		for (int i = 0; i < a.length && i < b.length; ++i) {
+			int c = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+			if (c != 0) return c;
+		}
+		return Integer.compare(a.length, b.length);
+	};
+
+	private static byte[] printKey(String set, String collectorNumber) {
+		return (Objects.toString(set, "").toLowerCase() + "/" + Objects.toString(collectorNumber, "")).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static class KeyEntry {
+		final byte[] key;
+		final int record;
+
+		KeyEntry(byte[] key, int record) {
+			this.key = key;
+			this.record = record;
+		}
+	}
+
+	/**
+	 * A read-only view of a mapped data file. Safe to use from several threads at once.
+	 */
+	public static class Store {
+		private final Path file;
+		private final ByteBuffer buffer;
+		private final int sets, cards, names;
+		private final int schemaOffset, setsOffset, cardsOffset, idIndex, printIndex, nameIndex, keyPool;
+		private final MessagePackCodecs.Schema schema;
+
+		private Store(Path file, ByteBuffer buffer) throws IOException {
+			this.file = file;
+			this.buffer = buffer;
+
+			if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IOException(file + " is not a mapped Scryfall data file");
+			int version = buffer.getInt(4);
+			if (version > FORMAT_VERSION) throw new IOException(String.format("Data file is format version %d, but only versions up to %d are supported", version, FORMAT_VERSION));
+
+			this.sets = buffer.getInt(8);
+			this.cards = buffer.getInt(12);
+			this.names = buffer.getInt(16);
+			this.schemaOffset = buffer.getInt(20);
+			this.setsOffset = buffer.getInt(24);
+			this.cardsOffset = buffer.getInt(28);
+			this.idIndex = buffer.getInt(32);
+			this.printIndex = buffer.getInt(36);
+			this.nameIndex = buffer.getInt(40);
+			this.keyPool = buffer.getInt(44);
+
+			if (buffer.getInt(48) != buffer.capacity() || keyPool > buffer.capacity() || nameIndex + (long) names * KEY_ENTRY_SIZE != keyPool) {
+				throw new IOException(file + " is truncated or corrupt");
+			}
+
+			try (MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(slice(schemaOffset))) {
+				this.schema = MessagePackCodecs.Schema.read(unpacker);
+			}
+		}
+
+		/**
+		 * Maps a data file written by Mapped. The file is mapped read-only, and stays mapped until the store is
+		 * garbage collected; Java offers no way to unmap it sooner. Data files must be replaced by moving a new file
+		 * over them, never rewritten in place, or readers of the old mapping may crash.
+		 */
+		public static Store open(Path file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				if (channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				return new Store(file, buffer);
+			}
+		}
+
+		/**
+		 * Copies a record out of the mapping. MessagePack can read a direct buffer in place, but only with reflective
+		 * access newer JVMs don't allow by default, and records are small.
+		 */
+		private byte[] slice(int offset) throws IOException {
+			if (offset < HEADER_SIZE || offset > buffer.capacity() - Integer.BYTES) throw new IOException(String.format("Record offset %d of %s is out of range", offset, file));
+			int length = buffer.getInt(offset);
+			if (length < 0 || length > buffer.capacity() - offset - Integer.BYTES) throw new IOException(String.format("Record at offset %d of %s is truncated", offset, file));
+
+			ByteBuffer record = buffer.duplicate();
+			record.position(offset + Integer.BYTES);
+			byte[] data = new byte[length];
+			record.get(data);
+			return data;
+		}
+
+		private int next(int offset) {
+			return offset + Integer.BYTES + buffer.getInt(offset);
+		}
+
+		private int compareKey(int keyOffset, byte[] key, boolean prefix) {
+			int length = buffer.getInt(keyPool + keyOffset), start = keyPool + keyOffset + Integer.BYTES;
+			for (int i = 0; i < length && i < key.length; ++i) {
+				int c = Integer.compare(buffer.get(start + i) & 0xFF, key[i] & 0xFF);
+				if (c != 0) return c;
+			}
+			return prefix && length >= key.length ? 0 : Integer.compare(length, key.length);
+		}
+
+		private int[] range(int index, int count, byte[] key, boolean prefix) {
+			int lo = 0, hi = count;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (compareKey(buffer.getInt(index + mid * KEY_ENTRY_SIZE), key, prefix) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+
+			int end = lo;
+			while (end < count && compareKey(buffer.getInt(index + end * KEY_ENTRY_SIZE), key, prefix) == 0) ++end;
+
+			int[] records = new int[end - lo];
+			for (int i = lo; i < end; ++i) records[i - lo] = buffer.getInt(index + i * KEY_ENTRY_SIZE + Integer.BYTES);
+			return records;
+		}
+
+		/**
+		 * @return The number of cards in the file.
+		 */
+		public int size() {
+			return cards;
+		}
+
+		/**
+		 * @return Every set in the file.
+		 */
+		public List<emi.lib.mtg.scryfall.api.Set> sets() throws IOException {
+			List<emi.lib.mtg.scryfall.api.Set> sets = new ArrayList<>(this.sets);
+			for (int i = 0, offset = setsOffset; i < this.sets; ++i, offset = next(offset)) {
+				try (MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(slice(offset))) {
+					sets.add(MessagePackCodecs.SETS.unpack(unpacker, schema.forBlock()));
+				}
+			}
+			return sets;
+		}
+
+		/**
+		 * @return The record offset of every card, in the order they were written.
+		 */
+		public int[] records() {
+			int[] records = new int[cards];
+			for (int i = 0, offset = cardsOffset; i < cards; ++i, offset = next(offset)) records[i] = offset;
+			return records;
+		}
+
+		/**
+		 * @return The record offset of the card with the given ID, or -1 if there isn't one.
+		 */
+		public int record(UUID id) {
+			long msb = id.getMostSignificantBits(), lsb = id.getLeastSignificantBits();
+			int lo = 0, hi = cards - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1, entry = idIndex + mid * ID_ENTRY_SIZE;
+				int c = Long.compare(buffer.getLong(entry), msb);
+				if (c == 0) c = Long.compare(buffer.getLong(entry + Long.BYTES), lsb);
+
+				if (c < 0) {
+					lo = mid + 1;
+				} else if (c > 0) {
+					hi = mid - 1;
+				} else {
+					return buffer.getInt(entry + 2 * Long.BYTES);
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @return The record offsets of every card with the given name, or with a face of the given name.
+		 */
+		public int[] recordsByName(String name) {
+			return range(nameIndex, names, name.getBytes(StandardCharsets.UTF_8), false);
+		}
+
+		/**
+		 * @return The record offsets of every card printed in the given set.
+		 */
+		public int[] recordsBySet(String code) {
+			return range(printIndex, cards, (code.toLowerCase() + "/").getBytes(StandardCharsets.UTF_8), true);
+		}
+
+		/**
+		 * @return The record offset of the card with the given set and collector number, or -1 if there isn't one.
+		 */
+		public int record(String code, String collectorNumber) {
+			int[] records = range(printIndex, cards, printKey(code, collectorNumber), false);
+			return records.length > 0 ? records[0] : -1;
+		}
+
+		/**
+		 * Decodes the card at the given record offset.
+		 */
+		public emi.lib.mtg.scryfall.api.Card card(int record) throws IOException {
+			try (MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(slice(record))) {
+				return MessagePackCodecs.CARDS.unpack(unpacker, schema.forBlock());
+			}
+		}
+	}
+
+	private Path writeFile;
+	private DataOutputStream writer;
+	private MessageBufferPacker packer;
+	private MessagePackCodecs.Schema writeSchema;
+	private int writeSets, writeCards, declaredSets, declaredCards;
+	private int[] offsets;
+	private List<long[]> ids;
+	private List<KeyEntry> printKeys, nameKeys;
+
+	private Store store;
+	private int readOffset, remaining;
+	private State readState, writeState;
+
+	public Mapped() {
+		this.writer = null;
+		this.packer = null;
+		this.store = null;
+		this.readState = State.Inactive;
+		this.writeState = State.Inactive;
+	}
+
+	private void checkWriteState(State against) {
+		if (writeState != against)
+			throw new IllegalStateException(String.format("%s writer expected %s state, but is in %s state!", getClass().getName(), against, writeState));
+	}
+
+	private void checkReadState(State against) {
+		if (readState != against)
+			throw new IllegalStateException(String.format("%s reader expected %s state, but is in %s state!", getClass().getName(), against, readState));
+	}
+
+	@Override
+	public Implementation type() {
+		return Implementation.Mapped;
+	}
+
+	private int writeRecord() throws IOException {
+		int offset = writer.size();
+		byte[] data = packer.toByteArray();
+		if ((long) offset + Integer.BYTES + data.length >= Integer.MAX_VALUE) throw new IOException("Mapped data file would exceed 2 GB");
+
+		writer.writeInt(data.length);
+		writer.write(data);
+		packer.clear();
+		return offset;
+	}
+
+	@Override
+	public void startWriting(Path file) throws IOException {
+		if (writer != null) writer.close();
+		writeFile = file;
+		writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), 64 * 1024));
+		writer.write(new byte[HEADER_SIZE]);
+
+		packer = org.msgpack.core.MessagePack.newDefaultBufferPacker();
+		writeSchema = MessagePackCodecs.Schema.forWriting();
+		MessagePackCodecs.Schema.write(packer);
+		offsets = new int[HEADER_FIELDS];
+		offsets[5] = writeRecord();
+		writeState = State.Header;
+	}
+
+	@Override
+	public void writeStartSets(int count) throws IOException {
+		checkWriteState(State.Header);
+		offsets[6] = writer.size();
+		declaredSets = count;
+		writeSets = 0;
+		writeState = State.Sets;
+	}
+
+	@Override
+	public void writeSet(emi.lib.mtg.scryfall.api.Set set) throws IOException {
+		checkWriteState(State.Sets);
+		MessagePackCodecs.SETS.pack(packer, set, writeSchema.forBlock());
+		writeRecord();
+		++writeSets;
+	}
+
+	@Override
+	public void writeEndSets() throws IOException {
+		checkWriteState(State.Sets);
+		ScryfallSerde.expect(writeSets, declaredSets);
+	}
+
+	@Override
+	public void writeStartCards(int count) throws IOException {
+		checkWriteState(State.Sets);
+		offsets[7] = writer.size();
+		declaredCards = count;
+		writeCards = 0;
+		ids = new ArrayList<>(count);
+		printKeys = new ArrayList<>(count);
+		nameKeys = new ArrayList<>(count * 5 / 4);
+		writeState = State.Cards;
+	}
+
+	@Override
+	public void writeCard(emi.lib.mtg.scryfall.api.Card card) throws IOException {
+		checkWriteState(State.Cards);
+		MessagePackCodecs.CARDS.pack(packer, card, writeSchema.forBlock());
+		int offset = writeRecord();
+
+		ids.add(new long[] { card.id.getMostSignificantBits(), card.id.getLeastSignificantBits(), offset });
+		printKeys.add(new KeyEntry(printKey(card.set, card.collectorNumber), offset));
+
+		Set<String> names = new LinkedHashSet<>();
+		names.add(card.name);
+		if (card.cardFaces != null) card.cardFaces.forEach(f -> names.add(f.name));
+		for (String name : names) if (name != null) nameKeys.add(new KeyEntry(name.getBytes(StandardCharsets.UTF_8), offset));
+
+		++writeCards;
+	}
+
+	@Override
+	public void writeEndCards() throws IOException {
+		checkWriteState(State.Cards);
+		ScryfallSerde.expect(writeCards, declaredCards);
+		writeState = State.Footer;
+	}
+
+	private void writeKeyIndex(List<KeyEntry> entries, Map<ByteBuffer, Integer> pool, ByteArrayOutputStream poolBytes) throws IOException {
+		entries.sort((a, b) -> KEY_ORDER.compare(a.key, b.key));
+		DataOutputStream poolOut = new DataOutputStream(poolBytes);
+		for (KeyEntry entry : entries) {
+			Integer keyOffset = pool.get(ByteBuffer.wrap(entry.key));
+			if (keyOffset == null) {
+				keyOffset = poolBytes.size();
+				pool.put(ByteBuffer.wrap(entry.key), keyOffset);
+				poolOut.writeInt(entry.key.length);
+				poolOut.write(entry.key);
+			}
+
+			writer.writeInt(keyOffset);
+			writer.writeInt(entry.record);
+		}
+	}
+
+	@Override
+	public void endWriting() throws IOException {
+		checkWriteState(State.Footer);
+
+		ids.sort((a, b) -> {
+			int c = Long.compare(a[0], b[0]);
+			return c != 0 ? c : Long.compare(a[1], b[1]);
+		});
+
+		offsets[8] = writer.size();
+		for (long[] id : ids) {
+			writer.writeLong(id[0]);
+			writer.writeLong(id[1]);
+			writer.writeInt((int) id[2]);
+		}
+
+		Map<ByteBuffer, Integer> pool = new HashMap<>();
+		ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		offsets[9] = writer.size();
+		writeKeyIndex(printKeys, pool, poolBytes);
+		offsets[10] = writer.size();
+		writeKeyIndex(nameKeys, pool, poolBytes);
+		offsets[11] = writer.size();
+		poolBytes.writeTo(writer);
+		offsets[12] = writer.size();
+		if (offsets[12] == Integer.MAX_VALUE) throw new IOException("Mapped data file would exceed 2 GB");
+
+		writer.close();
+		writer = null;
+
+		offsets[0] = MAGIC;
+		offsets[1] = FORMAT_VERSION;
+		offsets[2] = writeSets;
+		offsets[3] = writeCards;
+		offsets[4] = nameKeys.size();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		for (int field : offsets) header.putInt(field);
+		header.flip();
+		try (FileChannel channel = FileChannel.open(writeFile, StandardOpenOption.WRITE)) {
+			while (header.hasRemaining()) channel.write(header, header.position());
+		}
+
+		packer.close();
+		packer = null;
+		ids = null;
+		printKeys = null;
+		nameKeys = null;
+		writeState = State.Inactive;
+	}
+
+	@Override
+	public void startReading(Path file) throws IOException {
+		store = Store.open(file);
+		readState = State.Header;
+	}
+
+	@Override
+	public void readStartSets() throws IOException {
+		checkReadState(State.Header);
+		readOffset = store.setsOffset;
+		remaining = store.sets;
+		readState = State.Sets;
+	}
+
+	@Override
+	public boolean hasNextSet() throws IOException {
+		checkReadState(State.Sets);
+		return remaining > 0;
+	}
+
+	@Override
+	public emi.lib.mtg.scryfall.api.Set nextSet() throws IOException {
+		checkReadState(State.Sets);
+		try (MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(store.slice(readOffset))) {
+			emi.lib.mtg.scryfall.api.Set set = MessagePackCodecs.SETS.unpack(unpacker, store.schema.forBlock());
+			readOffset = store.next(readOffset);
+			--remaining;
+			return set;
+		}
+	}
+
+	@Override
+	public void readEndSets() throws IOException {
+		checkReadState(State.Sets);
+		ScryfallSerde.expect(remaining, 0);
+	}
+
+	@Override
+	public int readStartCards() throws IOException {
+		checkReadState(State.Sets);
+		readOffset = store.cardsOffset;
+		remaining = store.cards;
+		readState = State.Cards;
+		return remaining;
+	}
+
+	@Override
+	public boolean hasNextCard() throws IOException {
+		checkReadState(State.Cards);
+		return remaining > 0;
+	}
+
+	@Override
+	public emi.lib.mtg.scryfall.api.Card nextCard() throws IOException {
+		checkReadState(State.Cards);
+		emi.lib.mtg.scryfall.api.Card card = store.card(readOffset);
+		readOffset = store.next(readOffset);
+		--remaining;
+		return card;
+	}
+
+	/**
+	 * Every record can be decoded independently, so cards are decoded in parallel on the common ForkJoinPool, in runs of
+	 * CARDS_PER_TASK.
+	 */
+	@Override
+	public void readCards(CardConsumer consumer) throws IOException {
+		checkReadState(State.Cards);
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		while (remaining > 0) {
+			final int start = readOffset, count = Math.min(remaining, CARDS_PER_TASK);
+			for (int i = 0; i < count; ++i) readOffset = store.next(readOffset);
+			remaining -= count;
+
+			tasks.add(ForkJoinPool.commonPool().submit(() -> {
+				for (int i = 0, offset = start; i < count; ++i, offset = store.next(offset)) consumer.accept(store.card(offset));
+				return null;
+			}));
+		}
+
+		try {
+			for (ForkJoinTask<?> task : tasks) task.get();
+		} catch (InterruptedException ie) {
+			tasks.forEach(t -> t.cancel(true));
+			throw new InterruptedIOException("Interrupted while decoding cards");
+		} catch (ExecutionException ee) {
+			tasks.forEach(t -> t.cancel(true));
+			if (ee.getCause() instanceof IOException) throw (IOException) ee.getCause();
+			throw new IOException(ee.getCause());
+		}
+	}
+
+	@Override
+	public void readEndCards() throws IOException {
+		checkReadState(State.Cards);
+		ScryfallSerde.expect(remaining, 0);
+		readState = State.Footer;
+	}
+
+	@Override
+	public void endReading() throws IOException {
+		checkReadState(State.Footer);
+		store = null;
+		readState = State.Inactive;
+	}
+
+	@Override
+	public void close() throws Exception {
+		store = null;
+		if (writer != null) writer.close();
+		if (packer != null) packer.close();
+	}
+}
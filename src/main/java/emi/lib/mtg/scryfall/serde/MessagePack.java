@@ -1,11 +1,14 @@
 package emi.lib.mtg.scryfall.serde;
 
 import emi.lib.mtg.scryfall.api.ApiObject;
+import emi.lib.mtg.scryfall.api.ScryfallUri;
 import emi.lib.mtg.scryfall.api.enums.ApiEnum;
+import org.msgpack.core.MessageBufferPacker;
 import org.msgpack.core.MessagePacker;
 import org.msgpack.core.MessageUnpacker;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
@@ -13,14 +16,15 @@ import java.lang.reflect.Type;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class MessagePack implements ScryfallSerde {
-	private static final Map<Class<?>, Map<String, Field>> REFLECTION_MAP = new HashMap<>();
+	private static final Map<Class<?>, Map<String, Field>> REFLECTION_MAP = new ConcurrentHashMap<>();
 
 	private static Map<String, Field> reflectionMap(Class<?> type) {
 		assert Object.class.isAssignableFrom(type) : "Attempt to build reflection map for non-Object type " + type;
@@ -40,12 +44,19 @@ public class MessagePack implements ScryfallSerde {
 		return fieldsMap;
 	}
 
+	@SuppressWarnings("unchecked")
 	public static void packApiObject(MessagePacker packer, ApiObject object) throws IOException {
-		packObject(packer, object);
+		MessagePackCodecs.Codec<ApiObject> codec = (MessagePackCodecs.Codec<ApiObject>) MessagePackCodecs.forType(object.getClass());
+		if (codec != null) {
+			codec.pack(packer, object, null);
+		} else {
+			packObject(packer, object);
+		}
 	}
 
 	public static <T extends ApiObject> T unpackApiObject(MessageUnpacker unpacker, Class<T> type) throws IOException {
-		return unpackObject(unpacker, type);
+		MessagePackCodecs.Codec<T> codec = MessagePackCodecs.forType(type);
+		return codec != null ? codec.unpack(unpacker, null) : unpackObject(unpacker, type);
 	}
 
 	public static <T> void packObject(MessagePacker packer, T object) throws IOException {
@@ -71,7 +82,10 @@ public class MessagePack implements ScryfallSerde {
 			for (int i = 0; i < fieldCount; ++i) {
 				String fieldName = unpacker.unpackString();
 				Field f = fields.get(fieldName);
-				if (f == null) throw new IOException("Unrecognized field name " + fieldName + " in type " + type.getCanonicalName()); // TODO Be more lenient?
+				if (f == null) {
+					unpacker.skipValue();
+					continue;
+				}
 				unpackField(unpacker, object, f);
 			}
 
@@ -94,6 +108,8 @@ public class MessagePack implements ScryfallSerde {
 			packer.packLong(((LocalDate) value).toEpochDay());
 		} else if (type == URL.class) {
 			packer.packString(((URL) value).toExternalForm());
+		} else if (type == ScryfallUri.class) {
+			packer.packString(value.toString());
 		} else if (type == UUID.class) {
 			packer.packLong(((UUID) value).getMostSignificantBits());
 			packer.packLong(((UUID) value).getLeastSignificantBits());
@@ -119,6 +135,8 @@ public class MessagePack implements ScryfallSerde {
 			return LocalDate.ofEpochDay(unpacker.unpackLong());
 		} else if (type == URL.class) {
 			return new URL(unpacker.unpackString());
+		} else if (type == ScryfallUri.class) {
+			return ScryfallUri.of(unpacker.unpackString());
 		} else if (type == UUID.class) {
 			return new UUID(unpacker.unpackLong(), unpacker.unpackLong());
 		} else if (ApiEnum.class.isAssignableFrom(type)) {
@@ -294,14 +312,44 @@ public class MessagePack implements ScryfallSerde {
 		}
 	}
 
-	private MessagePacker writer;
+	/**
+	 * Version 1 files, as older versions of this library wrote, are a single gzip stream holding a map of "sets" and
+	 * "cards", with every object's fields keyed by name.
+	 *
+	 * Version 5 files are a BlockFile. The header block is a map of "version", "schema" and "sets"; every other block
+	 * holds up to CARDS_PER_BLOCK cards, with its own string dictionary so it can be decoded independently. Blocks are
+	 * compressed with whichever Compression codec the BlockFile records. The file extension is still .msgpack.gz; the
+	 * format is told apart by its first bytes.
+	 */
+	private static final int FORMAT_VERSION = 5;
+	private static final int CARDS_PER_BLOCK = 1024;
+
+	private final Compression compression;
+	private BlockFile.Writer blockWriter;
+	private MessageBufferPacker writer;
+	private MessagePackCodecs.Schema writeSchema;
+	private int blockCards, declaredCards, writtenCards;
+
+	private BlockFile.Reader blockReader;
+	private int nextBlock;
 	private MessageUnpacker reader;
+	private MessagePackCodecs.Schema schema, cardSchema;
 	private State readState, writeState;
-	private int remainingSets, remainingCards;
+	private int remainingSets, remainingCards, blockRemaining;
 
 	public MessagePack() {
+		this(Compression.Gzip);
+	}
+
+	public MessagePack(Compression compression) {
+		this.compression = compression;
+		this.blockWriter = null;
 		this.writer = null;
+		this.writeSchema = null;
+		this.blockReader = null;
 		this.reader = null;
+		this.schema = null;
+		this.cardSchema = null;
 		this.readState = State.Inactive;
 		this.writeState = State.Inactive;
 		this.remainingSets = -1;
@@ -325,9 +373,15 @@ public class MessagePack implements ScryfallSerde {
 
 	@Override
 	public void startWriting(Path file) throws IOException {
-		if (writer != null) writer.close();
-		writer = org.msgpack.core.MessagePack.newDefaultPacker(new GZIPOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)));
-		writer.packMapHeader(2);
+		if (blockWriter != null) blockWriter.close();
+		blockWriter = new BlockFile.Writer(file, compression);
+		writer = org.msgpack.core.MessagePack.newDefaultBufferPacker();
+		writeSchema = MessagePackCodecs.Schema.forWriting();
+		writer.packMapHeader(3);
+		writer.packString("version");
+		writer.packInt(FORMAT_VERSION);
+		writer.packString("schema");
+		MessagePackCodecs.Schema.write(writer);
 		writeState = State.Header;
 	}
 
@@ -343,7 +397,7 @@ public class MessagePack implements ScryfallSerde {
 	public void writeSet(emi.lib.mtg.scryfall.api.Set set) throws IOException {
 		checkWriteState(State.Sets);
 		writer.packString(set.code);
-		packApiObject(writer, set);
+		MessagePackCodecs.SETS.pack(writer, set, writeSchema);
 	}
 
 	@Override
@@ -354,39 +408,75 @@ public class MessagePack implements ScryfallSerde {
 	@Override
 	public void writeStartCards(int count) throws IOException {
 		checkWriteState(State.Sets);
-		writer.packString("cards");
-		writer.packMapHeader(count);
+		blockWriter.writeBlock(writer.toByteArray(), 0);
+		writer.clear();
+		writeSchema = writeSchema.forBlock();
+		blockCards = 0;
+		declaredCards = count;
+		writtenCards = 0;
 		writeState = State.Cards;
 	}
 
+	private void flushBlock() throws IOException {
+		if (blockCards == 0) return;
+		blockWriter.writeBlock(writer.toByteArray(), blockCards);
+		writer.clear();
+		writeSchema = writeSchema.forBlock();
+		blockCards = 0;
+	}
+
 	@Override
 	public void writeCard(emi.lib.mtg.scryfall.api.Card card) throws IOException {
 		checkWriteState(State.Cards);
 		writer.packLong(card.id.getMostSignificantBits());
 		writer.packLong(card.id.getLeastSignificantBits());
-		packApiObject(writer, card);
+		MessagePackCodecs.CARDS.pack(writer, card, writeSchema);
+		++writtenCards;
+		if (++blockCards == CARDS_PER_BLOCK) flushBlock();
 	}
 
 	@Override
 	public void writeEndCards() throws IOException {
 		checkWriteState(State.Cards);
+		ScryfallSerde.expect(writtenCards, declaredCards);
+		flushBlock();
 		writeState = State.Footer;
 	}
 
 	@Override
 	public void endWriting() throws IOException {
 		checkWriteState(State.Footer);
+		blockWriter.close();
+		blockWriter = null;
 		writer.close();
 		writer = null;
+		writeSchema = null;
 		writeState = State.Inactive;
 	}
 
 	@Override
 	public void startReading(Path file) throws IOException {
 		if (reader != null) reader.close();
-		reader = org.msgpack.core.MessagePack.newDefaultUnpacker(new GZIPInputStream(Files.newInputStream(file)));
-		int len = reader.unpackMapHeader();
-		ScryfallSerde.expect(len, 2);
+		if (blockReader != null) blockReader.close();
+
+		if (BlockFile.detect(file)) {
+			blockReader = new BlockFile.Reader(file);
+			reader = org.msgpack.core.MessagePack.newDefaultUnpacker(blockReader.readBlock(blockReader.blocks().get(0)));
+			ScryfallSerde.expect(reader.unpackMapHeader(), 3);
+			ScryfallSerde.expect(reader.unpackString(), "version");
+			int version = reader.unpackInt();
+			if (version != FORMAT_VERSION) throw new IOException(String.format("Data file is format version %d, but only version %d is supported", version, FORMAT_VERSION));
+			ScryfallSerde.expect(reader.unpackString(), "schema");
+			schema = MessagePackCodecs.Schema.read(reader);
+			readState = State.Header;
+			return;
+		}
+
+		// Anything else is a version 1 file.
+		blockReader = null;
+		reader = org.msgpack.core.MessagePack.newDefaultUnpacker(Compression.decompress(Files.newInputStream(file)));
+		ScryfallSerde.expect(reader.unpackMapHeader(), 2);
+		schema = null;
 		readState = State.Header;
 	}
 
@@ -408,7 +498,7 @@ public class MessagePack implements ScryfallSerde {
 	public emi.lib.mtg.scryfall.api.Set nextSet() throws IOException, IllegalStateException {
 		checkReadState(State.Sets);
 		String code = reader.unpackString();
-		emi.lib.mtg.scryfall.api.Set set = unpackApiObject(reader, emi.lib.mtg.scryfall.api.Set.class);
+		emi.lib.mtg.scryfall.api.Set set = MessagePackCodecs.SETS.unpack(reader, schema);
 		ScryfallSerde.expect(code, set.code);
 		--remainingSets;
 		return set;
@@ -424,8 +514,19 @@ public class MessagePack implements ScryfallSerde {
 	@Override
 	public int readStartCards() throws IOException {
 		checkReadState(State.Sets);
-		ScryfallSerde.expect(reader.unpackString(), "cards");
-		remainingCards = reader.unpackMapHeader();
+
+		if (blockReader != null) {
+			reader.close();
+			reader = null;
+			remainingCards = blockReader.blocks().stream().mapToInt(b -> b.cards).sum();
+			nextBlock = 1;
+			blockRemaining = 0;
+		} else {
+			ScryfallSerde.expect(reader.unpackString(), "cards");
+			remainingCards = reader.unpackMapHeader();
+			cardSchema = schema;
+		}
+
 		readState = State.Cards;
 		return remainingCards;
 	}
@@ -436,16 +537,72 @@ public class MessagePack implements ScryfallSerde {
 		return remainingCards > 0;
 	}
 
+	private static emi.lib.mtg.scryfall.api.Card unpackCard(MessageUnpacker reader, MessagePackCodecs.Schema schema) throws IOException {
+		UUID id = new UUID(reader.unpackLong(), reader.unpackLong());
+		emi.lib.mtg.scryfall.api.Card card = MessagePackCodecs.CARDS.unpack(reader, schema);
+		ScryfallSerde.expect(id, card.id);
+		return card;
+	}
+
 	@Override
 	public emi.lib.mtg.scryfall.api.Card nextCard() throws IOException {
 		checkReadState(State.Cards);
-		UUID id = new UUID(reader.unpackLong(), reader.unpackLong());
-		emi.lib.mtg.scryfall.api.Card card = unpackApiObject(reader, emi.lib.mtg.scryfall.api.Card.class);
-		ScryfallSerde.expect(id, card.id);
+
+		if (blockReader != null) {
+			while (blockRemaining == 0) {
+				if (reader != null) reader.close();
+				BlockFile.Block block = blockReader.blocks().get(nextBlock++);
+				reader = org.msgpack.core.MessagePack.newDefaultUnpacker(blockReader.readBlock(block));
+				cardSchema = schema.forBlock();
+				blockRemaining = block.cards;
+			}
+			--blockRemaining;
+		}
+
+		emi.lib.mtg.scryfall.api.Card card = unpackCard(reader, cardSchema);
 		--remainingCards;
 		return card;
 	}
 
+	/**
+	 * Block files are decompressed and decoded in parallel on the common ForkJoinPool, one task per block, provided
+	 * nothing has been read from the cards section yet.
+	 */
+	@Override
+	public void readCards(CardConsumer consumer) throws IOException {
+		checkReadState(State.Cards);
+
+		if (blockReader == null || nextBlock != 1) {
+			ScryfallSerde.super.readCards(consumer);
+			return;
+		}
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (BlockFile.Block block : blockReader.blocks().subList(1, blockReader.blocks().size())) {
+			tasks.add(ForkJoinPool.commonPool().submit(() -> {
+				MessagePackCodecs.Schema blockSchema = schema.forBlock();
+				try (MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(blockReader.readBlock(block))) {
+					for (int i = 0; i < block.cards; ++i) consumer.accept(unpackCard(unpacker, blockSchema));
+				}
+				return null;
+			}));
+		}
+
+		try {
+			for (ForkJoinTask<?> task : tasks) task.get();
+		} catch (InterruptedException ie) {
+			tasks.forEach(t -> t.cancel(true));
+			throw new InterruptedIOException("Interrupted while decoding cards");
+		} catch (ExecutionException ee) {
+			tasks.forEach(t -> t.cancel(true));
+			if (ee.getCause() instanceof IOException) throw (IOException) ee.getCause();
+			throw new IOException(ee.getCause());
+		}
+
+		nextBlock = blockReader.blocks().size();
+		remainingCards = 0;
+	}
+
 	@Override
 	public void readEndCards() throws IOException {
 		checkReadState(State.Cards);
@@ -457,14 +614,20 @@ public class MessagePack implements ScryfallSerde {
 	@Override
 	public void endReading() throws IOException {
 		checkReadState(State.Footer);
-		reader.close();
+		if (reader != null) reader.close();
 		reader = null;
+		if (blockReader != null) blockReader.close();
+		blockReader = null;
+		schema = null;
+		cardSchema = null;
 		readState = State.Inactive;
 	}
 
 	@Override
 	public void close() throws Exception {
 		if (reader != null) reader.close();
+		if (blockReader != null) blockReader.close();
 		if (writer != null) writer.close();
+		if (blockWriter != null) blockWriter.close();
 	}
 }
@@ -0,0 +1,1039 @@
+package emi.lib.mtg.scryfall.serde;
+
+import emi.lib.mtg.scryfall.api.Card;
+import emi.lib.mtg.scryfall.api.ScryfallUri;
+import emi.lib.mtg.scryfall.api.Set;
+import emi.lib.mtg.scryfall.api.enums.*;
+import org.msgpack.core.ExtensionTypeHeader;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Hand-written MessagePack codecs for the Scryfall API objects we store. These read and write fields directly, rather
+ * than going through reflection for every field of every card.
+ *
+ * Objects are written as a map from field to value, with nil for null references. Without a Schema, fields are keyed by
+ * name, the same as MessagePack's reflective packObject/unpackObject. With one, fields are keyed by their index in a
+ * schema table written once at the top of the file. Either way, fields the reader doesn't know about are skipped.
+ *
+ * With a Schema, strings which repeat a lot (names, type lines, artists, enum values, map keys...) also go through a
+ * per-file dictionary. The first occurrence of each is written as a DICTIONARY_ENTRY extension holding the UTF-8 bytes,
+ * and adds it to the dictionary; later occurrences are just its index. Every string codec understands all three forms,
+ * so which fields use the dictionary can change without breaking older readers. Readers skipping a field they don't
+ * know still add any dictionary entries in it, since the indices that follow count them.
+ */
+final class MessagePackCodecs {
+	interface Codec<T> {
+		void pack(MessagePacker packer, T value, Schema schema) throws IOException;
+		T unpack(MessageUnpacker unpacker, Schema schema) throws IOException;
+	}
+
+	private MessagePackCodecs() {
+	}
+
+	private static final Map<Class<?>, Codec<?>> CODECS = new IdentityHashMap<>();
+	private static final List<ObjectCodec<?>> OBJECT_CODECS = new ArrayList<>();
+
+	private static final byte DICTIONARY_ENTRY = 1;
+
+	/**
+	 * Per-file encoding state: maps the field tags used in a file to the fields our codecs know about, and holds the
+	 * file's string dictionary. Not thread-safe; each file being read or written needs its own.
+	 */
+	static final class Schema {
+		private final int[][] tags;
+		private final Map<String, Integer> indices;
+		private final List<String> entries;
+
+		private Schema(int[][] tags) {
+			this.tags = tags;
+			this.indices = new HashMap<>();
+			this.entries = new ArrayList<>();
+		}
+
+		/**
+		 * @return A schema for writing a new file: every codec's fields, tagged in declaration order, and an empty
+		 * string dictionary.
+		 */
+		static Schema forWriting() {
+			return new Schema(new int[0][]);
+		}
+
+		/**
+		 * @return A schema with the same field tags as this one, but an empty string dictionary, for an independently
+		 * decodable block of the same file.
+		 */
+		Schema forBlock() {
+			return new Schema(tags);
+		}
+
+		private void packShared(MessagePacker packer, String value) throws IOException {
+			Integer index = indices.get(value);
+			if (index != null) {
+				packer.packInt(index);
+				return;
+			}
+
+			indices.put(value, indices.size());
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			packer.packExtensionTypeHeader(DICTIONARY_ENTRY, bytes.length);
+			packer.writePayload(bytes);
+		}
+
+		private String unpackShared(MessageUnpacker unpacker) throws IOException {
+			if (unpacker.getNextFormat().getValueType() == ValueType.INTEGER) {
+				int index = unpacker.unpackInt();
+				if (index < 0 || index >= entries.size()) throw new IOException(String.format("String dictionary index %d out of range; only %d entries so far", index, entries.size()));
+				return entries.get(index);
+			}
+
+			ExtensionTypeHeader header = unpacker.unpackExtensionTypeHeader();
+			if (header.getType() != DICTIONARY_ENTRY) throw new IOException("Unexpected MessagePack extension type " + header.getType());
+			String value = new String(unpacker.readPayload(header.getLength()), StandardCharsets.UTF_8);
+			entries.add(value);
+			return value;
+		}
+
+		/**
+		 * Skips a value the reader has no field for. Any dictionary entries inside it still count toward the indices of
+		 * later references, so they're added to the dictionary as they're passed over.
+		 */
+		void skip(MessageUnpacker unpacker) throws IOException {
+			switch (unpacker.getNextFormat().getValueType()) {
+				case ARRAY:
+					for (int i = unpacker.unpackArrayHeader(); i > 0; --i) skip(unpacker);
+					break;
+				case MAP:
+					for (int i = unpacker.unpackMapHeader(); i > 0; --i) {
+						skip(unpacker);
+						skip(unpacker);
+					}
+					break;
+				case EXTENSION:
+					ExtensionTypeHeader header = unpacker.unpackExtensionTypeHeader();
+					byte[] payload = unpacker.readPayload(header.getLength());
+					if (header.getType() == DICTIONARY_ENTRY) entries.add(new String(payload, StandardCharsets.UTF_8));
+					break;
+				default:
+					unpacker.skipValue();
+					break;
+			}
+		}
+
+		/**
+		 * @return The local field index for each tag in the file, or null if tags are local field indices.
+		 */
+		private int[] tags(ObjectCodec<?> codec) {
+			return codec.index < tags.length ? tags[codec.index] : null;
+		}
+
+		/**
+		 * Writes the native schema: a map from object type name to its field names, in tag order.
+		 */
+		static void write(MessagePacker packer) throws IOException {
+			packer.packMapHeader(OBJECT_CODECS.size());
+			for (ObjectCodec<?> codec : OBJECT_CODECS) {
+				packer.packString(codec.name);
+				packer.packArrayHeader(codec.fields.length);
+				for (String field : codec.fields) packer.packString(field);
+			}
+		}
+
+		/**
+		 * Reads a schema written by write(), possibly by a different version with different fields.
+		 */
+		static Schema read(MessageUnpacker unpacker) throws IOException {
+			int[][] tags = new int[OBJECT_CODECS.size()][];
+			for (int i = 0; i < tags.length; ++i) tags[i] = new int[0];
+
+			int types = unpacker.unpackMapHeader();
+			for (int i = 0; i < types; ++i) {
+				String name = unpacker.unpackString();
+				ObjectCodec<?> codec = OBJECT_CODECS.stream().filter(c -> c.name.equals(name)).findAny().orElse(null);
+
+				int fields = unpacker.unpackArrayHeader();
+				int[] mapping = new int[fields];
+				for (int j = 0; j < fields; ++j) {
+					Integer field = codec == null ? null : codec.byName.get(unpacker.unpackString());
+					if (codec == null) unpacker.skipValue();
+					mapping[j] = field == null ? -1 : field;
+				}
+
+				if (codec != null) tags[codec.index] = mapping;
+			}
+
+			return new Schema(tags);
+		}
+	}
+
+	/**
+	 * A codec for one of the API object types, which knows its fields by name and by index.
+	 */
+	static abstract class ObjectCodec<T> implements Codec<T> {
+		private final String name;
+		private final String[] fields;
+		private final Map<String, Integer> byName;
+		private final int index;
+
+		ObjectCodec(String name, String... fields) {
+			this.name = name;
+			this.fields = fields;
+			this.byName = new HashMap<>();
+			for (int i = 0; i < fields.length; ++i) this.byName.put(fields[i], i);
+			this.index = OBJECT_CODECS.size();
+			OBJECT_CODECS.add(this);
+		}
+
+		abstract T create();
+		abstract void packFields(MessagePacker packer, T value, Schema schema) throws IOException;
+		abstract void unpackField(MessageUnpacker unpacker, T value, int field, Schema schema) throws IOException;
+
+		void key(MessagePacker packer, int field, Schema schema) throws IOException {
+			if (schema == null) {
+				packer.packString(fields[field]);
+			} else {
+				packer.packInt(field);
+			}
+		}
+
+		@Override
+		public void pack(MessagePacker packer, T value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+				return;
+			}
+
+			packer.packMapHeader(fields.length);
+			packFields(packer, value, schema);
+		}
+
+		@Override
+		public T unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			if (unpacker.tryUnpackNil()) return null;
+
+			T value = create();
+			int[] tags = schema == null ? null : schema.tags(this);
+			int count = unpacker.unpackMapHeader();
+			for (int i = 0; i < count; ++i) {
+				int field;
+				if (schema == null) {
+					Integer named = byName.get(unpacker.unpackString());
+					field = named == null ? -1 : named;
+				} else {
+					int tag = unpacker.unpackInt();
+					field = tags == null ? (tag < fields.length ? tag : -1) : (tag >= 0 && tag < tags.length ? tags[tag] : -1);
+				}
+
+				if (field < 0) {
+					if (schema == null) {
+						unpacker.skipValue();
+					} else {
+						schema.skip(unpacker);
+					}
+				} else {
+					unpackField(unpacker, value, field, schema);
+				}
+			}
+
+			return value;
+		}
+	}
+
+	/**
+	 * @return The codec for the given API object type, or null if it has to be handled reflectively.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Codec<T> forType(Class<T> type) {
+		return (Codec<T>) CODECS.get(type);
+	}
+
+	static final Codec<String> STRINGS = new Codec<String>() {
+		@Override
+		public void pack(MessagePacker packer, String value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+			} else {
+				packer.packString(value);
+			}
+		}
+
+		@Override
+		public String unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			if (unpacker.tryUnpackNil()) return null;
+
+			switch (unpacker.getNextFormat().getValueType()) {
+				case INTEGER:
+				case EXTENSION:
+					if (schema == null) throw new IOException("String dictionary reference outside of a data file");
+					return schema.unpackShared(unpacker);
+				default:
+					return unpacker.unpackString();
+			}
+		}
+	};
+
+	/**
+	 * Like STRINGS, but writes through the file's string dictionary if there is one.
+	 */
+	static final Codec<String> SHARED_STRINGS = new Codec<String>() {
+		@Override
+		public void pack(MessagePacker packer, String value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+			} else if (schema == null) {
+				packer.packString(value);
+			} else {
+				schema.packShared(packer, value);
+			}
+		}
+
+		@Override
+		public String unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			return STRINGS.unpack(unpacker, schema);
+		}
+	};
+
+	static final Codec<Integer> INTEGERS = new Codec<Integer>() {
+		@Override
+		public void pack(MessagePacker packer, Integer value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+			} else {
+				packer.packInt(value);
+			}
+		}
+
+		@Override
+		public Integer unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			return unpacker.tryUnpackNil() ? null : unpacker.unpackInt();
+		}
+	};
+
+	static final Codec<Double> DOUBLES = new Codec<Double>() {
+		@Override
+		public void pack(MessagePacker packer, Double value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+			} else {
+				packer.packDouble(value);
+			}
+		}
+
+		@Override
+		public Double unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			return unpacker.tryUnpackNil() ? null : unpacker.unpackDouble();
+		}
+	};
+
+	static final Codec<LocalDate> DATES = new Codec<LocalDate>() {
+		@Override
+		public void pack(MessagePacker packer, LocalDate value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+			} else {
+				packer.packLong(value.toEpochDay());
+			}
+		}
+
+		@Override
+		public LocalDate unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			return unpacker.tryUnpackNil() ? null : LocalDate.ofEpochDay(unpacker.unpackLong());
+		}
+	};
+
+	/**
+	 * URLs are written as a two-element array of their prefix and the rest, both through the string dictionary. Without a
+	 * schema, as in version 1 files, they're plain strings.
+	 */
+	static final Codec<ScryfallUri> URIS = new Codec<ScryfallUri>() {
+		@Override
+		public void pack(MessagePacker packer, ScryfallUri value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+			} else if (schema == null) {
+				packer.packString(value.toString());
+			} else {
+				packer.packArrayHeader(2);
+				SHARED_STRINGS.pack(packer, value.prefix(), schema);
+				SHARED_STRINGS.pack(packer, value.rest(), schema);
+			}
+		}
+
+		@Override
+		public ScryfallUri unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			if (unpacker.tryUnpackNil()) return null;
+
+			if (unpacker.getNextFormat().getValueType() == ValueType.ARRAY) {
+				ScryfallSerde.expect(unpacker.unpackArrayHeader(), 2);
+				return ScryfallUri.of(STRINGS.unpack(unpacker, schema), STRINGS.unpack(unpacker, schema));
+			}
+
+			return ScryfallUri.of(STRINGS.unpack(unpacker, schema));
+		}
+	};
+
+	static final Codec<UUID> UUIDS = new Codec<UUID>() {
+		@Override
+		public void pack(MessagePacker packer, UUID value, Schema schema) throws IOException {
+			if (value == null) {
+				packer.packNil();
+			} else {
+				packer.packLong(value.getMostSignificantBits());
+				packer.packLong(value.getLeastSignificantBits());
+			}
+		}
+
+		@Override
+		public UUID unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+			return unpacker.tryUnpackNil() ? null : new UUID(unpacker.unpackLong(), unpacker.unpackLong());
+		}
+	};
+
+	private static <T extends Enum<T> & ApiEnum> Codec<T> enumCodec(Class<T> type) {
+		// Look up exactly what we write first, so decoding our own files doesn't need to lowercase every value.
+		final Map<String, T> exact = new HashMap<>();
+		for (T value : type.getEnumConstants()) exact.put(value.serialized(), value);
+
+		return new Codec<T>() {
+			@Override
+			public void pack(MessagePacker packer, T value, Schema schema) throws IOException {
+				SHARED_STRINGS.pack(packer, value == null ? null : value.serialized(), schema);
+			}
+
+			@Override
+			public T unpack(MessageUnpacker unpacker, Schema schema) throws IOException {
+				String serialized = STRINGS.unpack(unpacker, schema);
+				if (serialized == null) return null;
+
+				T value = exact.get(serialized);
+				return value != null ? value : ApiEnum.Serialization.orUnrecognized(type, serialized);
+			}
+		};
+	}
+
+	static final Codec<CardLayout> LAYOUTS = enumCodec(CardLayout.class);
+	static final Codec<Color> COLORS = enumCodec(Color.class);
+	static final Codec<Legality> LEGALITIES = enumCodec(Legality.class);
+	static final Codec<SetType> SET_TYPES = enumCodec(SetType.class);
+	static final Codec<Finish> FINISHES = enumCodec(Finish.class);
+	static final Codec<Rarity> RARITIES = enumCodec(Rarity.class);
+	static final Codec<CardFrame> FRAMES = enumCodec(CardFrame.class);
+	static final Codec<BorderColor> BORDER_COLORS = enumCodec(BorderColor.class);
+
+	private static <T> void packCollection(MessagePacker packer, Collection<T> values, Codec<T> codec, Schema schema) throws IOException {
+		if (values == null) {
+			packer.packNil();
+			return;
+		}
+
+		packer.packArrayHeader(values.size());
+		for (T value : values) codec.pack(packer, value, schema);
+	}
+
+	private static <T> List<T> unpackList(MessageUnpacker unpacker, Codec<T> codec, Schema schema) throws IOException {
+		if (unpacker.tryUnpackNil()) return null;
+
+		int size = unpacker.unpackArrayHeader();
+		List<T> values = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i) values.add(codec.unpack(unpacker, schema));
+		return values;
+	}
+
+	private static <T> java.util.Set<T> unpackSet(MessageUnpacker unpacker, Codec<T> codec, Schema schema) throws IOException {
+		if (unpacker.tryUnpackNil()) return null;
+
+		int size = unpacker.unpackArrayHeader();
+		java.util.Set<T> values = new HashSet<>();
+		for (int i = 0; i < size; ++i) values.add(codec.unpack(unpacker, schema));
+		return values;
+	}
+
+	private static <V> void packMap(MessagePacker packer, Map<String, V> map, Codec<V> codec, Schema schema) throws IOException {
+		if (map == null) {
+			packer.packNil();
+			return;
+		}
+
+		packer.packMapHeader(map.size());
+		for (Map.Entry<String, V> entry : map.entrySet()) {
+			SHARED_STRINGS.pack(packer, entry.getKey(), schema);
+			codec.pack(packer, entry.getValue(), schema);
+		}
+	}
+
+	private static <V> Map<String, V> unpackMap(MessageUnpacker unpacker, Codec<V> codec, Schema schema) throws IOException {
+		if (unpacker.tryUnpackNil()) return null;
+
+		int pairs = unpacker.unpackMapHeader();
+		Map<String, V> map = new HashMap<>();
+		for (int i = 0; i < pairs; ++i) map.put(STRINGS.unpack(unpacker, schema), codec.unpack(unpacker, schema));
+		return map;
+	}
+
+	static final ObjectCodec<Card.Part> PARTS = new ObjectCodec<Card.Part>("part",
+			"id", "name", "component", "uri") {
+		@Override
+		Card.Part create() {
+			return new Card.Part();
+		}
+
+		@Override
+		void packFields(MessagePacker packer, Card.Part value, Schema schema) throws IOException {
+			key(packer, 0, schema);
+			UUIDS.pack(packer, value.id, schema);
+			key(packer, 1, schema);
+			SHARED_STRINGS.pack(packer, value.name, schema);
+			key(packer, 2, schema);
+			SHARED_STRINGS.pack(packer, value.component, schema);
+			key(packer, 3, schema);
+			URIS.pack(packer, value.uri, schema);
+		}
+
+		@Override
+		void unpackField(MessageUnpacker unpacker, Card.Part value, int field, Schema schema) throws IOException {
+			switch (field) {
+				case 0:
+					value.id = UUIDS.unpack(unpacker, schema);
+					break;
+				case 1:
+					value.name = STRINGS.unpack(unpacker, schema);
+					break;
+				case 2:
+					value.component = STRINGS.unpack(unpacker, schema);
+					break;
+				case 3:
+					value.uri = URIS.unpack(unpacker, schema);
+					break;
+				default:
+					throw new AssertionError(field);
+			}
+		}
+	};
+
+	static final ObjectCodec<Card.Face> FACES = new ObjectCodec<Card.Face>("face",
+			"object", "name", "manaCost", "typeLine", "oracleText", "power", "toughness", "loyalty", "defense",
+			"colors", "colorIndicator", "flavorText", "artist", "artistId", "illustrationId", "oracleId", "imageUris") {
+		@Override
+		Card.Face create() {
+			return new Card.Face();
+		}
+
+		@Override
+		void packFields(MessagePacker packer, Card.Face value, Schema schema) throws IOException {
+			key(packer, 0, schema);
+			SHARED_STRINGS.pack(packer, value.object, schema);
+			key(packer, 1, schema);
+			SHARED_STRINGS.pack(packer, value.name, schema);
+			key(packer, 2, schema);
+			SHARED_STRINGS.pack(packer, value.manaCost, schema);
+			key(packer, 3, schema);
+			SHARED_STRINGS.pack(packer, value.typeLine, schema);
+			key(packer, 4, schema);
+			SHARED_STRINGS.pack(packer, value.oracleText, schema);
+			key(packer, 5, schema);
+			SHARED_STRINGS.pack(packer, value.power, schema);
+			key(packer, 6, schema);
+			SHARED_STRINGS.pack(packer, value.toughness, schema);
+			key(packer, 7, schema);
+			SHARED_STRINGS.pack(packer, value.loyalty, schema);
+			key(packer, 8, schema);
+			SHARED_STRINGS.pack(packer, value.defense, schema);
+			key(packer, 9, schema);
+			packCollection(packer, value.colors, COLORS, schema);
+			key(packer, 10, schema);
+			packCollection(packer, value.colorIndicator, COLORS, schema);
+			key(packer, 11, schema);
+			STRINGS.pack(packer, value.flavorText, schema);
+			key(packer, 12, schema);
+			SHARED_STRINGS.pack(packer, value.artist, schema);
+			key(packer, 13, schema);
+			UUIDS.pack(packer, value.artistId, schema);
+			key(packer, 14, schema);
+			UUIDS.pack(packer, value.illustrationId, schema);
+			key(packer, 15, schema);
+			UUIDS.pack(packer, value.oracleId, schema);
+			key(packer, 16, schema);
+			packMap(packer, value.imageUris, URIS, schema);
+		}
+
+		@Override
+		void unpackField(MessageUnpacker unpacker, Card.Face value, int field, Schema schema) throws IOException {
+			switch (field) {
+				case 0:
+					value.object = STRINGS.unpack(unpacker, schema);
+					break;
+				case 1:
+					value.name = STRINGS.unpack(unpacker, schema);
+					break;
+				case 2:
+					value.manaCost = STRINGS.unpack(unpacker, schema);
+					break;
+				case 3:
+					value.typeLine = STRINGS.unpack(unpacker, schema);
+					break;
+				case 4:
+					value.oracleText = STRINGS.unpack(unpacker, schema);
+					break;
+				case 5:
+					value.power = STRINGS.unpack(unpacker, schema);
+					break;
+				case 6:
+					value.toughness = STRINGS.unpack(unpacker, schema);
+					break;
+				case 7:
+					value.loyalty = STRINGS.unpack(unpacker, schema);
+					break;
+				case 8:
+					value.defense = STRINGS.unpack(unpacker, schema);
+					break;
+				case 9:
+					value.colors = unpackSet(unpacker, COLORS, schema);
+					break;
+				case 10:
+					value.colorIndicator = unpackSet(unpacker, COLORS, schema);
+					break;
+				case 11:
+					value.flavorText = STRINGS.unpack(unpacker, schema);
+					break;
+				case 12:
+					value.artist = STRINGS.unpack(unpacker, schema);
+					break;
+				case 13:
+					value.artistId = UUIDS.unpack(unpacker, schema);
+					break;
+				case 14:
+					value.illustrationId = UUIDS.unpack(unpacker, schema);
+					break;
+				case 15:
+					value.oracleId = UUIDS.unpack(unpacker, schema);
+					break;
+				case 16:
+					value.imageUris = unpackMap(unpacker, URIS, schema);
+					break;
+				default:
+					throw new AssertionError(field);
+			}
+		}
+	};
+
+	static final ObjectCodec<Card> CARDS = new ObjectCodec<Card>("card",
+			"object", "id", "oracleId", "multiverseIds", "mtgoId", "uri", "scryfallUri", "printsSearchUri", "name",
+			"layout", "cmc", "typeLine", "oracleText", "manaCost", "power", "toughness", "loyalty", "defense",
+			"lifeModifier", "handModifier", "colors", "colorIndicator", "colorIdentity", "allParts", "cardFaces",
+			"legalities", "reserved", "edhrecRank", "rulingsUri", "lang", "printedName", "printedText",
+			"printedTypeLine", "set", "setType", "setName", "collectorNumber", "setSearchUri", "setUri",
+			"scryfallSetUrl", "imageUris", "highresImage", "finishes", "oversized", "reprint", "digital", "promo",
+			"illustrationId", "rarity", "flavorText", "artist", "frame", "fullArt", "watermark", "borderColor",
+			"storySpotlightNumber", "storySpotlightUri", "timeshifted", "colorshifted", "futureshifted", "usd", "eur",
+			"purchaseUris", "relatedUris", "releasedAt") {
+		@Override
+		Card create() {
+			return new Card();
+		}
+
+		@Override
+		void packFields(MessagePacker packer, Card value, Schema schema) throws IOException {
+			key(packer, 0, schema);
+			SHARED_STRINGS.pack(packer, value.object, schema);
+			key(packer, 1, schema);
+			UUIDS.pack(packer, value.id, schema);
+			key(packer, 2, schema);
+			UUIDS.pack(packer, value.oracleId, schema);
+			key(packer, 3, schema);
+			packCollection(packer, value.multiverseIds, INTEGERS, schema);
+			key(packer, 4, schema);
+			INTEGERS.pack(packer, value.mtgoId, schema);
+			key(packer, 5, schema);
+			URIS.pack(packer, value.uri, schema);
+			key(packer, 6, schema);
+			URIS.pack(packer, value.scryfallUri, schema);
+			key(packer, 7, schema);
+			URIS.pack(packer, value.printsSearchUri, schema);
+			key(packer, 8, schema);
+			SHARED_STRINGS.pack(packer, value.name, schema);
+			key(packer, 9, schema);
+			LAYOUTS.pack(packer, value.layout, schema);
+			key(packer, 10, schema);
+			DOUBLES.pack(packer, value.cmc, schema);
+			key(packer, 11, schema);
+			SHARED_STRINGS.pack(packer, value.typeLine, schema);
+			key(packer, 12, schema);
+			SHARED_STRINGS.pack(packer, value.oracleText, schema);
+			key(packer, 13, schema);
+			SHARED_STRINGS.pack(packer, value.manaCost, schema);
+			key(packer, 14, schema);
+			SHARED_STRINGS.pack(packer, value.power, schema);
+			key(packer, 15, schema);
+			SHARED_STRINGS.pack(packer, value.toughness, schema);
+			key(packer, 16, schema);
+			SHARED_STRINGS.pack(packer, value.loyalty, schema);
+			key(packer, 17, schema);
+			SHARED_STRINGS.pack(packer, value.defense, schema);
+			key(packer, 18, schema);
+			SHARED_STRINGS.pack(packer, value.lifeModifier, schema);
+			key(packer, 19, schema);
+			SHARED_STRINGS.pack(packer, value.handModifier, schema);
+			key(packer, 20, schema);
+			packCollection(packer, value.colors, COLORS, schema);
+			key(packer, 21, schema);
+			packCollection(packer, value.colorIndicator, COLORS, schema);
+			key(packer, 22, schema);
+			packCollection(packer, value.colorIdentity, COLORS, schema);
+			key(packer, 23, schema);
+			packCollection(packer, value.allParts, PARTS, schema);
+			key(packer, 24, schema);
+			packCollection(packer, value.cardFaces, FACES, schema);
+			key(packer, 25, schema);
+			packMap(packer, value.legalities, LEGALITIES, schema);
+			key(packer, 26, schema);
+			packer.packBoolean(value.reserved);
+			key(packer, 27, schema);
+			INTEGERS.pack(packer, value.edhrecRank, schema);
+			key(packer, 28, schema);
+			URIS.pack(packer, value.rulingsUri, schema);
+			key(packer, 29, schema);
+			SHARED_STRINGS.pack(packer, value.lang, schema);
+			key(packer, 30, schema);
+			STRINGS.pack(packer, value.printedName, schema);
+			key(packer, 31, schema);
+			STRINGS.pack(packer, value.printedText, schema);
+			key(packer, 32, schema);
+			STRINGS.pack(packer, value.printedTypeLine, schema);
+			key(packer, 33, schema);
+			SHARED_STRINGS.pack(packer, value.set, schema);
+			key(packer, 34, schema);
+			SET_TYPES.pack(packer, value.setType, schema);
+			key(packer, 35, schema);
+			SHARED_STRINGS.pack(packer, value.setName, schema);
+			key(packer, 36, schema);
+			SHARED_STRINGS.pack(packer, value.collectorNumber, schema);
+			key(packer, 37, schema);
+			URIS.pack(packer, value.setSearchUri, schema);
+			key(packer, 38, schema);
+			URIS.pack(packer, value.setUri, schema);
+			key(packer, 39, schema);
+			URIS.pack(packer, value.scryfallSetUrl, schema);
+			key(packer, 40, schema);
+			packMap(packer, value.imageUris, URIS, schema);
+			key(packer, 41, schema);
+			packer.packBoolean(value.highresImage);
+			key(packer, 42, schema);
+			packCollection(packer, value.finishes, FINISHES, schema);
+			key(packer, 43, schema);
+			packer.packBoolean(value.oversized);
+			key(packer, 44, schema);
+			packer.packBoolean(value.reprint);
+			key(packer, 45, schema);
+			packer.packBoolean(value.digital);
+			key(packer, 46, schema);
+			packer.packBoolean(value.promo);
+			key(packer, 47, schema);
+			UUIDS.pack(packer, value.illustrationId, schema);
+			key(packer, 48, schema);
+			RARITIES.pack(packer, value.rarity, schema);
+			key(packer, 49, schema);
+			STRINGS.pack(packer, value.flavorText, schema);
+			key(packer, 50, schema);
+			SHARED_STRINGS.pack(packer, value.artist, schema);
+			key(packer, 51, schema);
+			FRAMES.pack(packer, value.frame, schema);
+			key(packer, 52, schema);
+			packer.packBoolean(value.fullArt);
+			key(packer, 53, schema);
+			SHARED_STRINGS.pack(packer, value.watermark, schema);
+			key(packer, 54, schema);
+			BORDER_COLORS.pack(packer, value.borderColor, schema);
+			key(packer, 55, schema);
+			INTEGERS.pack(packer, value.storySpotlightNumber, schema);
+			key(packer, 56, schema);
+			STRINGS.pack(packer, value.storySpotlightUri, schema);
+			key(packer, 57, schema);
+			packer.packBoolean(value.timeshifted);
+			key(packer, 58, schema);
+			packer.packBoolean(value.colorshifted);
+			key(packer, 59, schema);
+			packer.packBoolean(value.futureshifted);
+			key(packer, 60, schema);
+			STRINGS.pack(packer, value.usd, schema);
+			key(packer, 61, schema);
+			STRINGS.pack(packer, value.eur, schema);
+			key(packer, 62, schema);
+			packMap(packer, value.purchaseUris, URIS, schema);
+			key(packer, 63, schema);
+			packMap(packer, value.relatedUris, URIS, schema);
+			key(packer, 64, schema);
+			DATES.pack(packer, value.releasedAt, schema);
+		}
+
+		@Override
+		void unpackField(MessageUnpacker unpacker, Card value, int field, Schema schema) throws IOException {
+			switch (field) {
+				case 0:
+					value.object = STRINGS.unpack(unpacker, schema);
+					break;
+				case 1:
+					value.id = UUIDS.unpack(unpacker, schema);
+					break;
+				case 2:
+					value.oracleId = UUIDS.unpack(unpacker, schema);
+					break;
+				case 3:
+					value.multiverseIds = unpackList(unpacker, INTEGERS, schema);
+					break;
+				case 4:
+					value.mtgoId = INTEGERS.unpack(unpacker, schema);
+					break;
+				case 5:
+					value.uri = URIS.unpack(unpacker, schema);
+					break;
+				case 6:
+					value.scryfallUri = URIS.unpack(unpacker, schema);
+					break;
+				case 7:
+					value.printsSearchUri = URIS.unpack(unpacker, schema);
+					break;
+				case 8:
+					value.name = STRINGS.unpack(unpacker, schema);
+					break;
+				case 9:
+					value.layout = LAYOUTS.unpack(unpacker, schema);
+					break;
+				case 10:
+					value.cmc = DOUBLES.unpack(unpacker, schema);
+					break;
+				case 11:
+					value.typeLine = STRINGS.unpack(unpacker, schema);
+					break;
+				case 12:
+					value.oracleText = STRINGS.unpack(unpacker, schema);
+					break;
+				case 13:
+					value.manaCost = STRINGS.unpack(unpacker, schema);
+					break;
+				case 14:
+					value.power = STRINGS.unpack(unpacker, schema);
+					break;
+				case 15:
+					value.toughness = STRINGS.unpack(unpacker, schema);
+					break;
+				case 16:
+					value.loyalty = STRINGS.unpack(unpacker, schema);
+					break;
+				case 17:
+					value.defense = STRINGS.unpack(unpacker, schema);
+					break;
+				case 18:
+					value.lifeModifier = STRINGS.unpack(unpacker, schema);
+					break;
+				case 19:
+					value.handModifier = STRINGS.unpack(unpacker, schema);
+					break;
+				case 20:
+					value.colors = unpackSet(unpacker, COLORS, schema);
+					break;
+				case 21:
+					value.colorIndicator = unpackSet(unpacker, COLORS, schema);
+					break;
+				case 22:
+					value.colorIdentity = unpackSet(unpacker, COLORS, schema);
+					break;
+				case 23:
+					value.allParts = unpackList(unpacker, PARTS, schema);
+					break;
+				case 24:
+					value.cardFaces = unpackList(unpacker, FACES, schema);
+					break;
+				case 25:
+					value.legalities = unpackMap(unpacker, LEGALITIES, schema);
+					break;
+				case 26:
+					value.reserved = unpacker.unpackBoolean();
+					break;
+				case 27:
+					value.edhrecRank = INTEGERS.unpack(unpacker, schema);
+					break;
+				case 28:
+					value.rulingsUri = URIS.unpack(unpacker, schema);
+					break;
+				case 29:
+					value.lang = STRINGS.unpack(unpacker, schema);
+					break;
+				case 30:
+					value.printedName = STRINGS.unpack(unpacker, schema);
+					break;
+				case 31:
+					value.printedText = STRINGS.unpack(unpacker, schema);
+					break;
+				case 32:
+					value.printedTypeLine = STRINGS.unpack(unpacker, schema);
+					break;
+				case 33:
+					value.set = STRINGS.unpack(unpacker, schema);
+					break;
+				case 34:
+					value.setType = SET_TYPES.unpack(unpacker, schema);
+					break;
+				case 35:
+					value.setName = STRINGS.unpack(unpacker, schema);
+					break;
+				case 36:
+					value.collectorNumber = STRINGS.unpack(unpacker, schema);
+					break;
+				case 37:
+					value.setSearchUri = URIS.unpack(unpacker, schema);
+					break;
+				case 38:
+					value.setUri = URIS.unpack(unpacker, schema);
+					break;
+				case 39:
+					value.scryfallSetUrl = URIS.unpack(unpacker, schema);
+					break;
+				case 40:
+					value.imageUris = unpackMap(unpacker, URIS, schema);
+					break;
+				case 41:
+					value.highresImage = unpacker.unpackBoolean();
+					break;
+				case 42:
+					value.finishes = unpackList(unpacker, FINISHES, schema);
+					break;
+				case 43:
+					value.oversized = unpacker.unpackBoolean();
+					break;
+				case 44:
+					value.reprint = unpacker.unpackBoolean();
+					break;
+				case 45:
+					value.digital = unpacker.unpackBoolean();
+					break;
+				case 46:
+					value.promo = unpacker.unpackBoolean();
+					break;
+				case 47:
+					value.illustrationId = UUIDS.unpack(unpacker, schema);
+					break;
+				case 48:
+					value.rarity = RARITIES.unpack(unpacker, schema);
+					break;
+				case 49:
+					value.flavorText = STRINGS.unpack(unpacker, schema);
+					break;
+				case 50:
+					value.artist = STRINGS.unpack(unpacker, schema);
+					break;
+				case 51:
+					value.frame = FRAMES.unpack(unpacker, schema);
+					break;
+				case 52:
+					value.fullArt = unpacker.unpackBoolean();
+					break;
+				case 53:
+					value.watermark = STRINGS.unpack(unpacker, schema);
+					break;
+				case 54:
+					value.borderColor = BORDER_COLORS.unpack(unpacker, schema);
+					break;
+				case 55:
+					value.storySpotlightNumber = INTEGERS.unpack(unpacker, schema);
+					break;
+				case 56:
+					value.storySpotlightUri = STRINGS.unpack(unpacker, schema);
+					break;
+				case 57:
+					value.timeshifted = unpacker.unpackBoolean();
+					break;
+				case 58:
+					value.colorshifted = unpacker.unpackBoolean();
+					break;
+				case 59:
+					value.futureshifted = unpacker.unpackBoolean();
+					break;
+				case 60:
+					value.usd = STRINGS.unpack(unpacker, schema);
+					break;
+				case 61:
+					value.eur = STRINGS.unpack(unpacker, schema);
+					break;
+				case 62:
+					value.purchaseUris = unpackMap(unpacker, URIS, schema);
+					break;
+				case 63:
+					value.relatedUris = unpackMap(unpacker, URIS, schema);
+					break;
+				case 64:
+					value.releasedAt = DATES.unpack(unpacker, schema);
+					break;
+				default:
+					throw new AssertionError(field);
+			}
+		}
+	};
+
+	static final ObjectCodec<Set> SETS = new ObjectCodec<Set>("set",
+			"object", "code", "name", "searchUri", "setType", "releasedAt", "digital") {
+		@Override
+		Set create() {
+			return new Set();
+		}
+
+		@Override
+		void packFields(MessagePacker packer, Set value, Schema schema) throws IOException {
+			key(packer, 0, schema);
+			SHARED_STRINGS.pack(packer, value.object, schema);
+			key(packer, 1, schema);
+			STRINGS.pack(packer, value.code, schema);
+			key(packer, 2, schema);
+			STRINGS.pack(packer, value.name, schema);
+			key(packer, 3, schema);
+			URIS.pack(packer, value.searchUri, schema);
+			key(packer, 4, schema);
+			SET_TYPES.pack(packer, value.setType, schema);
+			key(packer, 5, schema);
+			DATES.pack(packer, value.releasedAt, schema);
+			key(packer, 6, schema);
+			packer.packBoolean(value.digital);
+		}
+
+		@Override
+		void unpackField(MessageUnpacker unpacker, Set value, int field, Schema schema) throws IOException {
+			switch (field) {
+				case 0:
+					value.object = STRINGS.unpack(unpacker, schema);
+					break;
+				case 1:
+					value.code = STRINGS.unpack(unpacker, schema);
+					break;
+				case 2:
+					value.name = STRINGS.unpack(unpacker, schema);
+					break;
+				case 3:
+					value.searchUri = URIS.unpack(unpacker, schema);
+					break;
+				case 4:
+					value.setType = SET_TYPES.unpack(unpacker, schema);
+					break;
+				case 5:
+					value.releasedAt = DATES.unpack(unpacker, schema);
+					break;
+				case 6:
+					value.digital = unpacker.unpackBoolean();
+					break;
+				default:
+					throw new AssertionError(field);
+			}
+		}
+	};
+
+	static {
+		CODECS.put(Card.class, CARDS);
+		CODECS.put(Card.Face.class, FACES);
+		CODECS.put(Card.Part.class, PARTS);
+		CODECS.put(Set.class, SETS);
+	}
+}
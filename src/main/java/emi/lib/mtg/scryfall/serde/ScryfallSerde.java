@@ -1,6 +1,7 @@
 package emi.lib.mtg.scryfall.serde;
 
 import emi.lib.mtg.scryfall.ScryfallPreferences;
+import emi.lib.mtg.scryfall.api.ScryfallApi;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -9,7 +10,8 @@ import java.util.Objects;
 public interface ScryfallSerde extends AutoCloseable {
 	enum Implementation {
 		Json (".json.gz", Json.class),
-		MessagePack (".msgpack.gz", MessagePack.class);
+		MessagePack (".msgpack.gz", MessagePack.class),
+		Mapped (".mapped", Mapped.class);
 
 		public final String extension;
 		final Class<? extends ScryfallSerde> implClass;
@@ -20,6 +22,11 @@ public interface ScryfallSerde extends AutoCloseable {
 		}
 	}
 
+	@FunctionalInterface
+	interface CardConsumer {
+		void accept(emi.lib.mtg.scryfall.api.Card card) throws IOException;
+	}
+
 	enum State {
 		Inactive,
 		Header,
@@ -33,11 +40,21 @@ public interface ScryfallSerde extends AutoCloseable {
 	}
 
 	static ScryfallSerde get(Implementation impl) {
+		return get(impl, ScryfallPreferences.get().compression);
+	}
+
+	/**
+	 * @param compression How files written by the serde are compressed. Reading always detects the codec from the file.
+	 *                    Mapped files are never compressed.
+	 */
+	static ScryfallSerde get(Implementation impl, Compression compression) {
 		switch (impl) {
 			case Json:
-				return new Json();
+				return new Json(ScryfallApi.GSON, compression);
 			case MessagePack:
-				return new MessagePack();
+				return new MessagePack(compression);
+			case Mapped:
+				return new Mapped();
 			default:
 				throw new AssertionError(impl.name());
 		}
@@ -62,6 +79,15 @@ public interface ScryfallSerde extends AutoCloseable {
 	int readStartCards() throws IOException;
 	boolean hasNextCard() throws IOException;
 	emi.lib.mtg.scryfall.api.Card nextCard() throws IOException;
+
+	/**
+	 * Reads all the remaining cards, passing each to consumer. Implementations may decode cards on several threads at
+	 * once, in which case consumer is called concurrently and in no particular order.
+	 */
+	default void readCards(CardConsumer consumer) throws IOException {
+		while (hasNextCard()) consumer.accept(nextCard());
+	}
+
 	void readEndCards() throws IOException;
 	void endReading() throws IOException;
 
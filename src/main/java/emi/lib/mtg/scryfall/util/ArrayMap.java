@@ -0,0 +1,125 @@
+package emi.lib.mtg.scryfall.util;
+
+import java.util.*;
+
+/**
+ * An insertion-ordered map which keeps up to INLINE_LIMIT entries in a plain array of alternating keys and values,
+ * searched linearly, and only moves them into a LinkedHashMap beyond that. Cards almost always have one to four faces,
+ * so this is a fraction of the size of a LinkedHashMap for them, and no slower.
+ *
+ * Like LinkedHashMap, it isn't safe to write while other threads read, and entries can't be removed.
+ */
+public final class ArrayMap<K, V> extends AbstractMap<K, V> {
+	/**
+	 * The most elements ArrayMap and ArraySet keep inline, and the most prints a card looks up by scanning.
+	 */
+	public static final int INLINE_LIMIT = 4;
+
+	private Object[] table;
+	private int size;
+	private Map<K, V> spill;
+	private Set<Entry<K, V>> entrySet;
+
+	public ArrayMap() {
+		this.table = new Object[4];
+	}
+
+	public ArrayMap(Map<? extends K, ? extends V> from) {
+		this.table = new Object[Math.max(2, Math.min(from.size(), INLINE_LIMIT)) * 2];
+		putAll(from);
+	}
+
+	private int find(Object key) {
+		for (int i = 0; i < size; ++i) {
+			if (Objects.equals(table[i * 2], key)) return i;
+		}
+
+		return -1;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (spill != null) return spill.get(key);
+
+		int i = find(key);
+		return i < 0 ? null : (V) table[i * 2 + 1];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return spill != null ? spill.containsKey(key) : find(key) >= 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		if (spill != null) return spill.put(key, value);
+
+		int i = find(key);
+		if (i >= 0) {
+			V old = (V) table[i * 2 + 1];
+			table[i * 2 + 1] = value;
+			return old;
+		}
+
+		if (size == INLINE_LIMIT) {
+			Map<K, V> spill = new LinkedHashMap<>(this);
+			spill.put(key, value);
+			this.spill = spill;
+			this.table = null;
+			return null;
+		}
+
+		if (size * 2 == table.length) table = Arrays.copyOf(table, Math.min(size * 2, INLINE_LIMIT) * 2);
+		table[size * 2] = key;
+		table[size * 2 + 1] = value;
+		++size;
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return spill != null ? spill.size() : size;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Entry<K, V>>() {
+				@Override
+				public Iterator<Entry<K, V>> iterator() {
+					if (spill != null) return Collections.unmodifiableMap(spill).entrySet().iterator();
+
+					final Object[] table = ArrayMap.this.table;
+					final int size = ArrayMap.this.size;
+
+					return new Iterator<Entry<K, V>>() {
+						private int next = 0;
+
+						@Override
+						public boolean hasNext() {
+							return next < size;
+						}
+
+						@Override
+						@SuppressWarnings("unchecked")
+						public Entry<K, V> next() {
+							if (next >= size) throw new NoSuchElementException();
+							Entry<K, V> entry = new SimpleImmutableEntry<>((K) table[next * 2], (V) table[next * 2 + 1]);
+							++next;
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return ArrayMap.this.size();
+				}
+			};
+		}
+
+		return entrySet;
+	}
+}
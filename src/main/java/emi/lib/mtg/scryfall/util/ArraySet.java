@@ -0,0 +1,83 @@
+package emi.lib.mtg.scryfall.util;
+
+import java.util.*;
+
+/**
+ * An insertion-ordered set which keeps up to ArrayMap.INLINE_LIMIT elements in a plain array, searched linearly, and
+ * only moves them into a LinkedHashSet beyond that. Cards and prints almost always have one to four faces or prints, so
+ * this is a fraction of the size of a LinkedHashSet for them, and no slower.
+ *
+ * Like LinkedHashSet, it isn't safe to write while other threads read, and elements can't be removed.
+ */
+public final class ArraySet<T> extends AbstractSet<T> {
+	private Object[] elements;
+	private int size;
+	private Set<T> spill;
+
+	public ArraySet() {
+		this.elements = new Object[2];
+	}
+
+	public ArraySet(Collection<? extends T> from) {
+		this.elements = new Object[Math.max(2, Math.min(from.size(), ArrayMap.INLINE_LIMIT))];
+		addAll(from);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (spill != null) return spill.contains(o);
+
+		for (int i = 0; i < size; ++i) {
+			if (Objects.equals(elements[i], o)) return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean add(T t) {
+		if (spill != null) return spill.add(t);
+		if (contains(t)) return false;
+
+		if (size == ArrayMap.INLINE_LIMIT) {
+			Set<T> spill = new LinkedHashSet<>(this);
+			spill.add(t);
+			this.spill = spill;
+			this.elements = null;
+			return true;
+		}
+
+		if (size == elements.length) elements = Arrays.copyOf(elements, Math.min(size * 2, ArrayMap.INLINE_LIMIT));
+		elements[size++] = t;
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return spill != null ? spill.size() : size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		if (spill != null) return Collections.unmodifiableSet(spill).iterator();
+
+		final Object[] elements = this.elements;
+		final int size = this.size;
+
+		return new Iterator<T>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (next >= size) throw new NoSuchElementException();
+				return (T) elements[next++];
+			}
+		};
+	}
+}
@@ -0,0 +1,141 @@
+package emi.lib.mtg.scryfall.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collects elements into fixed-size batches and processes each batch as a single task on an executor, rather than
+ * submitting a task per element. Elements may be submitted from several threads at once.
+ *
+ * If processing any element throws, the remaining batches are skipped, and await() rethrows the first failure.
+ */
+public class BatchProcessor<T> implements AutoCloseable {
+	@FunctionalInterface
+	public interface Task<T> {
+		void accept(T in) throws Exception;
+	}
+
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	private final int batchSize;
+	private final Task<? super T> task;
+	private final List<Future<?>> batches;
+	private final AtomicReference<Throwable> failure;
+	private List<T> batch;
+
+	/**
+	 * Processes batches on a new ForkJoinPool with the given parallelism, which is shut down by close().
+	 */
+	public BatchProcessor(int parallelism, int batchSize, Task<? super T> task) {
+		this(new ForkJoinPool(parallelism), true, batchSize, task);
+	}
+
+	/**
+	 * Processes batches on the given executor, which is left running by close().
+	 */
+	public BatchProcessor(ExecutorService executor, int batchSize, Task<? super T> task) {
+		this(executor, false, batchSize, task);
+	}
+
+	private BatchProcessor(ExecutorService executor, boolean ownsExecutor, int batchSize, Task<? super T> task) {
+		if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.batchSize = batchSize;
+		this.task = task;
+		this.batches = new ArrayList<>();
+		this.failure = new AtomicReference<>();
+		this.batch = new ArrayList<>(batchSize);
+	}
+
+	private static IOException rethrow(Throwable t) {
+		if (t instanceof IOException) return new IOException(t.getMessage(), t);
+		return new IOException(t.toString(), t);
+	}
+
+	private void run(List<T> batch) {
+		for (T in : batch) {
+			if (failure.get() != null) return;
+
+			try {
+				task.accept(in);
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+				return;
+			}
+		}
+	}
+
+	private void flush() {
+		if (batch.isEmpty()) return;
+
+		final List<T> full = batch;
+		batches.add(executor.submit(() -> run(full)));
+		batch = new ArrayList<>(batchSize);
+	}
+
+	/**
+	 * Adds an element to the current batch, submitting the batch once it's full.
+	 *
+	 * @throws IOException If an earlier batch has already failed, so there's no point continuing.
+	 */
+	public void submit(T in) throws IOException {
+		Throwable t = failure.get();
+		if (t != null) throw rethrow(t);
+
+		synchronized (this) {
+			batch.add(in);
+			if (batch.size() >= batchSize) flush();
+		}
+	}
+
+	/**
+	 * Submits the last partial batch, then waits for every batch to finish.
+	 *
+	 * @param timeout How long to wait for all batches, in total.
+	 * @param unit The unit of timeout.
+	 * @throws IOException If processing any element threw, or the timeout passed first.
+	 */
+	public void await(long timeout, TimeUnit unit) throws IOException {
+		List<Future<?>> batches;
+		synchronized (this) {
+			flush();
+			batches = new ArrayList<>(this.batches);
+		}
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int done = 0;
+		try {
+			for (Future<?> batch : batches) {
+				batch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				++done;
+			}
+		} catch (InterruptedException ie) {
+			batches.forEach(f -> f.cancel(true));
+			throw new InterruptedIOException("Interrupted while processing");
+		} catch (TimeoutException te) {
+			batches.forEach(f -> f.cancel(true));
+			throw new IOException(String.format("Timed out after %d %s with %d of %d batches processed", timeout, unit.toString().toLowerCase(), done, batches.size()), te);
+		} catch (ExecutionException ee) {
+			failure.compareAndSet(null, ee.getCause());
+		}
+
+		Throwable t = failure.get();
+		if (t != null) throw rethrow(t);
+	}
+
+	@Override
+	public void close() {
+		if (ownsExecutor) executor.shutdownNow();
+	}
+}
@@ -23,6 +23,10 @@ public class CardId {
 		return new CardId(first, second);
 	}
 
+	public static CardId of(UUID id) {
+		return new CardId(id);
+	}
+
 	public CardId(emi.lib.mtg.scryfall.api.Card face) {
 		this(face.name + "\n" + face.oracleText);
 	}
@@ -44,7 +48,15 @@ public class CardId {
 	}
 
 	private CardId(String total) {
-		this.id = UUID.nameUUIDFromBytes(total.getBytes(StandardCharsets.UTF_8));
+		this(UUID.nameUUIDFromBytes(total.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private CardId(UUID id) {
+		this.id = id;
+	}
+
+	public UUID uuid() {
+		return id;
 	}
 
 	@Override
@@ -0,0 +1,116 @@
+package emi.lib.mtg.scryfall.util;
+
+import java.util.*;
+
+/**
+ * An immutable map, stored as a single open-addressing table of alternating keys and values with linear probing. It
+ * needs no entry objects and no locks, so it's smaller and faster to read than a HashMap or a ConcurrentHashMap, and
+ * safe to share between threads once constructed.
+ *
+ * Neither keys nor values may be null.
+ */
+public final class FrozenMap<K, V> extends AbstractMap<K, V> {
+	private static final FrozenMap<?, ?> EMPTY = new FrozenMap<>(Collections.emptyMap());
+
+	@SuppressWarnings("unchecked")
+	public static <K, V> FrozenMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+		if (map instanceof FrozenMap) return (FrozenMap<K, V>) map;
+		if (map.isEmpty()) return (FrozenMap<K, V>) EMPTY;
+		return new FrozenMap<>(map);
+	}
+
+	private final Object[] table;
+	private final int mask, size;
+	private Set<Entry<K, V>> entrySet;
+
+	private FrozenMap(Map<? extends K, ? extends V> map) {
+		int capacity = Integer.highestOneBit(Math.max(1, map.size()) * 2 - 1) << 1;
+		this.table = new Object[capacity * 2];
+		this.mask = capacity - 1;
+
+		int size = 0;
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			Object key = Objects.requireNonNull(entry.getKey()), value = Objects.requireNonNull(entry.getValue());
+
+			int i = slot(key);
+			while (table[i * 2] != null && !table[i * 2].equals(key)) i = (i + 1) & mask;
+			if (table[i * 2] == null) ++size;
+			table[i * 2] = key;
+			table[i * 2 + 1] = value;
+		}
+		this.size = size;
+	}
+
+	private int slot(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (key == null) return null;
+
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			Object k = table[i * 2];
+			if (k == null) return null;
+			if (k.equals(key)) return (V) table[i * 2 + 1];
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		V value = get(key);
+		return value != null ? value : defaultValue;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Entry<K, V>>() {
+				@Override
+				public Iterator<Entry<K, V>> iterator() {
+					return new Iterator<Entry<K, V>>() {
+						private int next = advance(0);
+
+						private int advance(int from) {
+							while (from * 2 < table.length && table[from * 2] == null) ++from;
+							return from;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next * 2 < table.length;
+						}
+
+						@Override
+						@SuppressWarnings("unchecked")
+						public Entry<K, V> next() {
+							if (!hasNext()) throw new NoSuchElementException();
+							Entry<K, V> entry = new SimpleImmutableEntry<>((K) table[next * 2], (V) table[next * 2 + 1]);
+							next = advance(next + 1);
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+
+		return entrySet;
+	}
+}
@@ -0,0 +1,214 @@
+package emi.lib.mtg.scryfall.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * A chain of processing stages, each running on its own thread and connected to the next by a bounded queue. Wall-clock
+ * time is bounded by the slowest stage rather than the sum of all of them, and memory by the queue capacities.
+ *
+ * Build a pipeline by calling source(), then(), and finally sink(), then call run(). If any stage throws, every other
+ * stage is interrupted and run() rethrows the failure.
+ */
+public class Pipeline {
+	@FunctionalInterface
+	public interface Source<T> {
+		/**
+		 * @return The next element, or null if there are no more.
+		 */
+		T next() throws Exception;
+	}
+
+	@FunctionalInterface
+	public interface Stage<I, O> {
+		/**
+		 * @return The transformed element, or null to drop the element from the pipeline.
+		 */
+		O apply(I in) throws Exception;
+	}
+
+	@FunctionalInterface
+	public interface Sink<T> {
+		void accept(T in) throws Exception;
+	}
+
+	private static final Object END = new Object();
+
+	private static class Meter {
+		final String name;
+		final String unit;
+		final double scale;
+		final LongSupplier count;
+
+		Meter(String name, String unit, double scale, LongSupplier count) {
+			this.name = name;
+			this.unit = unit;
+			this.scale = scale;
+			this.count = count;
+		}
+	}
+
+	public class Link<T> {
+		private final BlockingQueue<Object> output;
+
+		private Link(BlockingQueue<Object> output) {
+			this.output = output;
+		}
+
+		public <O> Link<O> then(String name, Stage<? super T, ? extends O> stage) {
+			final BlockingQueue<Object> input = this.output, output = new ArrayBlockingQueue<>(capacity);
+			final AtomicLong count = meter(name);
+
+			worker(name, () -> {
+				for (Object in = input.take(); in != END; in = input.take()) {
+					@SuppressWarnings("unchecked")
+					O out = stage.apply((T) in);
+					count.incrementAndGet();
+					if (out != null) output.put(out);
+				}
+
+				output.put(END);
+			});
+
+			return new Link<>(output);
+		}
+
+		public void sink(String name, Sink<? super T> sink) {
+			final BlockingQueue<Object> input = this.output;
+			final AtomicLong count = meter(name);
+
+			worker(name, () -> {
+				for (Object in = input.take(); in != END; in = input.take()) {
+					@SuppressWarnings("unchecked")
+					T t = (T) in;
+					sink.accept(t);
+					count.incrementAndGet();
+				}
+			});
+		}
+	}
+
+	@FunctionalInterface
+	private interface Work {
+		void run() throws Exception;
+	}
+
+	private final String name;
+	private final int capacity;
+	private final List<Thread> threads;
+	private final List<Meter> meters;
+	private final AtomicReference<IOException> failure;
+	private long start;
+
+	/**
+	 * @param name A name for the pipeline, used to name its threads.
+	 * @param capacity The number of elements each queue between stages can hold.
+	 */
+	public Pipeline(String name, int capacity) {
+		this.name = name;
+		this.capacity = capacity;
+		this.threads = new ArrayList<>();
+		this.meters = new ArrayList<>();
+		this.failure = new AtomicReference<>();
+		this.start = -1;
+	}
+
+	public <T> Link<T> source(String name, Source<? extends T> source) {
+		final BlockingQueue<Object> output = new ArrayBlockingQueue<>(capacity);
+		final AtomicLong count = meter(name);
+
+		worker(name, () -> {
+			for (T t = source.next(); t != null; t = source.next()) {
+				count.incrementAndGet();
+				output.put(t);
+			}
+
+			output.put(END);
+		});
+
+		return new Link<>(output);
+	}
+
+	/**
+	 * Includes some work happening outside the pipeline in throughput().
+	 *
+	 * @param name The name of the work, e.g. "Download".
+	 * @param unit The unit of the work, e.g. "MB".
+	 * @param scale How many counts make up one unit.
+	 * @param count Supplies the amount of work done so far.
+	 */
+	public void monitor(String name, String unit, double scale, LongSupplier count) {
+		meters.add(new Meter(name, unit, scale, count));
+	}
+
+	private AtomicLong meter(String name) {
+		AtomicLong count = new AtomicLong();
+		meters.add(new Meter(name, "cards", 1.0, count::get));
+		return count;
+	}
+
+	private void worker(String stage, Work work) {
+		Thread thread = new Thread(() -> {
+			try {
+				work.run();
+			} catch (InterruptedException ie) {
+				// Either another stage failed, or run() was interrupted. Either way, someone else is reporting it.
+			} catch (Throwable t) {
+				if (failure.compareAndSet(null, new IOException(String.format("%s: %s stage failed", name, stage), t))) {
+					threads.forEach(Thread::interrupt);
+				}
+			}
+		}, String.format("%s: %s", name, stage));
+		thread.setDaemon(true);
+		threads.add(thread);
+	}
+
+	/**
+	 * @return The average throughput of each stage since the pipeline started, e.g. "Parse 1200 cards/s". Rates under ten
+	 * get a decimal place, so a slow download doesn't read as "Download 0 MB/s".
+	 */
+	public String throughput() {
+		double seconds = start < 0 ? 0.0 : Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+		return meters.stream()
+				.map(m -> {
+					double rate = seconds == 0.0 ? 0.0 : m.count.getAsLong() / m.scale / seconds;
+					return String.format(rate < 10.0 ? "%s %.1f %s/s" : "%s %.0f %s/s", m.name, rate, m.unit);
+				})
+				.collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * Runs the pipeline to completion.
+	 *
+	 * @param reporter Called periodically on the calling thread while the pipeline runs. May be null.
+	 * @param reportInterval Milliseconds between calls to reporter.
+	 * @throws IOException If any stage failed, or the calling thread was interrupted.
+	 */
+	public void run(Consumer<Pipeline> reporter, long reportInterval) throws IOException {
+		start = System.nanoTime();
+		threads.forEach(Thread::start);
+
+		try {
+			for (Thread thread : threads) {
+				while (thread.isAlive()) {
+					thread.join(reportInterval);
+					if (reporter != null) reporter.accept(this);
+				}
+			}
+		} catch (InterruptedException ie) {
+			threads.forEach(Thread::interrupt);
+			throw new InterruptedIOException(String.format("Interrupted while running %s", name));
+		}
+
+		if (failure.get() != null) throw failure.get();
+	}
+}
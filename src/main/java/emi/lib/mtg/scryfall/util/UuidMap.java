@@ -0,0 +1,260 @@
+package emi.lib.mtg.scryfall.util;
+
+import java.util.*;
+
+/**
+ * A map keyed on UUIDs, which stores the two halves of each key in parallel long arrays with linear probing. Lookups
+ * don't touch any entry or key objects, and get(long, long) lets callers that decode ids themselves skip allocating a
+ * UUID entirely.
+ *
+ * Values may not be null. Like HashMap, it isn't safe to write while other threads read.
+ */
+public final class UuidMap<V> extends AbstractMap<UUID, V> {
+	private static final int MIN_CAPACITY = 8;
+
+	private long[] msbs, lsbs;
+	private Object[] values;
+	private int mask, size;
+	private Set<Entry<UUID, V>> entrySet;
+
+	public UuidMap() {
+		this(0);
+	}
+
+	public UuidMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public UuidMap(Map<UUID, ? extends V> map) {
+		this(map.size());
+		putAll(map);
+	}
+
+	private static int capacityFor(int size) {
+		return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1);
+	}
+
+	private void allocate(int capacity) {
+		this.msbs = new long[capacity];
+		this.lsbs = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+	}
+
+	private int slot(long msb, long lsb) {
+		long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private int find(long msb, long lsb) {
+		for (int i = slot(msb, lsb); ; i = (i + 1) & mask) {
+			if (values[i] == null || (msbs[i] == msb && lsbs[i] == lsb)) return i;
+		}
+	}
+
+	/**
+	 * Looks up the value for the UUID with the given most- and least-significant bits.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long msb, long lsb) {
+		return (V) values[find(msb, lsb)];
+	}
+
+	public boolean containsKey(long msb, long lsb) {
+		return values[find(msb, lsb)] != null;
+	}
+
+	/**
+	 * Associates the value with the UUID with the given most- and least-significant bits.
+	 *
+	 * @return The value previously associated with that UUID, or null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long msb, long lsb, V value) {
+		Objects.requireNonNull(value);
+
+		int i = find(msb, lsb);
+		V old = (V) values[i];
+		if (old == null) {
+			if ((size + 1) * 2 > values.length) {
+				rehash(values.length * 2);
+				i = find(msb, lsb);
+			}
+
+			msbs[i] = msb;
+			lsbs[i] = lsb;
+			++size;
+		}
+
+		values[i] = value;
+		return old;
+	}
+
+	/**
+	 * Removes the UUID with the given most- and least-significant bits, shifting back any entries that probed past it.
+	 *
+	 * @return The value previously associated with that UUID, or null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long msb, long lsb) {
+		int i = find(msb, lsb);
+		V old = (V) values[i];
+		if (old == null) return null;
+
+		values[i] = null;
+		--size;
+
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = slot(msbs[j], lsbs[j]);
+			if (((j - home) & mask) < ((j - i) & mask)) continue;
+
+			msbs[i] = msbs[j];
+			lsbs[i] = lsbs[j];
+			values[i] = values[j];
+			values[j] = null;
+			i = j;
+		}
+
+		return old;
+	}
+
+	private void rehash(int capacity) {
+		long[] msbs = this.msbs, lsbs = this.lsbs;
+		Object[] values = this.values;
+		allocate(capacity);
+
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] == null) continue;
+			int j = find(msbs[i], lsbs[i]);
+			this.msbs[j] = msbs[i];
+			this.lsbs[j] = lsbs[i];
+			this.values[j] = values[i];
+		}
+	}
+
+	@Override
+	public V get(Object key) {
+		if (!(key instanceof UUID)) return null;
+		UUID id = (UUID) key;
+		return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		V value = get(key);
+		return value != null ? value : defaultValue;
+	}
+
+	@Override
+	public V put(UUID key, V value) {
+		return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+	}
+
+	@Override
+	public V remove(Object key) {
+		if (!(key instanceof UUID)) return null;
+		UUID id = (UUID) key;
+		return remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		allocate(MIN_CAPACITY);
+		size = 0;
+	}
+
+	/**
+	 * An entry which only creates its UUID if asked for it, so iterating over values doesn't allocate keys.
+	 */
+	private class SlotEntry implements Entry<UUID, V> {
+		private final int slot;
+
+		SlotEntry(int slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		public UUID getKey() {
+			return new UUID(msbs[slot], lsbs[slot]);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V) values[slot];
+		}
+
+		@Override
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry)) return false;
+			Entry<?, ?> other = (Entry<?, ?>) o;
+			return getKey().equals(other.getKey()) && getValue().equals(other.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ getValue().hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	@Override
+	public Set<Entry<UUID, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Entry<UUID, V>>() {
+				@Override
+				public Iterator<Entry<UUID, V>> iterator() {
+					final Object[] values = UuidMap.this.values;
+
+					return new Iterator<Entry<UUID, V>>() {
+						private int next = advance(0);
+
+						private int advance(int from) {
+							while (from < values.length && values[from] == null) ++from;
+							return from;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next < values.length;
+						}
+
+						@Override
+						public Entry<UUID, V> next() {
+							if (!hasNext()) throw new NoSuchElementException();
+							Entry<UUID, V> entry = new SlotEntry(next);
+							next = advance(next + 1);
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+
+		return entrySet;
+	}
+}
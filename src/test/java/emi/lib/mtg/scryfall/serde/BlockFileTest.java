@@ -0,0 +1,43 @@
+package emi.lib.mtg.scryfall.serde;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BlockFileTest {
+	private static byte[] block(int n) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < n; ++i) sb.append("Block ").append(n).append(" line ").append(i).append('\n');
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		for (Compression compression : Compression.values()) {
+			Path file = Files.createTempFile("blockfile", ".bin");
+			try {
+				try (BlockFile.Writer writer = new BlockFile.Writer(file, compression)) {
+					for (int i = 0; i < 20; ++i) writer.writeBlock(block(i * 100), i);
+				}
+
+				try (BlockFile.Reader reader = new BlockFile.Reader(file)) {
+					List<BlockFile.Block> blocks = reader.blocks();
+					assertEquals(20, blocks.size());
+					for (int i = 0; i < 20; ++i) {
+						assertEquals(i, blocks.get(i).cards);
+						assertArrayEquals(block(i * 100), reader.readBlock(blocks.get(i)));
+					}
+				}
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package emi.lib.mtg.scryfall.serde;
+
+import emi.lib.mtg.scryfall.api.Card;
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MessagePackCodecsTest {
+	private static byte[] pack(Card card) throws IOException {
+		MessageBufferPacker packer = org.msgpack.core.MessagePack.newDefaultBufferPacker();
+		MessagePackCodecs.CARDS.pack(packer, card, MessagePackCodecs.Schema.forWriting().forBlock());
+		packer.close();
+		return packer.toByteArray();
+	}
+
+	/**
+	 * @return The schema an older reader sees in a file whose writer had a field the reader doesn't: ours, with the
+	 * given field renamed to something no codec knows.
+	 */
+	private static MessagePackCodecs.Schema readerWithout(String type, String field) throws IOException {
+		MessageBufferPacker packer = org.msgpack.core.MessagePack.newDefaultBufferPacker();
+		MessagePackCodecs.Schema.write(packer);
+		packer.close();
+
+		MessageUnpacker unpacker = org.msgpack.core.MessagePack.newDefaultUnpacker(packer.toByteArray());
+		MessageBufferPacker renamed = org.msgpack.core.MessagePack.newDefaultBufferPacker();
+		int types = unpacker.unpackMapHeader();
+		renamed.packMapHeader(types);
+		for (int i = 0; i < types; ++i) {
+			String name = unpacker.unpackString();
+			renamed.packString(name);
+
+			int fields = unpacker.unpackArrayHeader();
+			renamed.packArrayHeader(fields);
+			for (int j = 0; j < fields; ++j) {
+				String f = unpacker.unpackString();
+				renamed.packString(name.equals(type) && f.equals(field) ? "notAField" : f);
+			}
+		}
+		renamed.close();
+
+		return MessagePackCodecs.Schema.read(org.msgpack.core.MessagePack.newDefaultUnpacker(renamed.toByteArray()));
+	}
+
+	private static Card unpack(byte[] data, MessagePackCodecs.Schema schema) throws IOException {
+		return MessagePackCodecs.CARDS.unpack(org.msgpack.core.MessagePack.newDefaultUnpacker(data), schema.forBlock());
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		Card card = new Card();
+		card.name = "Grizzly Bears";
+		card.typeLine = "Creature — Bear";
+		card.power = "2";
+		card.toughness = "2";
+
+		Card read = unpack(pack(card), readerWithout("nothing", "nothing"));
+		assertEquals(card.name, read.name);
+		assertEquals(card.typeLine, read.typeLine);
+		assertEquals("2", read.power);
+		assertEquals("2", read.toughness);
+	}
+
+	@Test
+	public void skippedFieldStillDefinesStrings() throws IOException {
+		Card card = new Card();
+		card.name = "Grizzly Bears";
+		card.power = "2";
+		card.toughness = "2";
+		card.artist = "Jeff A. Menges";
+
+		Card read = unpack(pack(card), readerWithout("card", "power"));
+		assertNull(read.power);
+		assertEquals("2", read.toughness);
+		assertEquals("Jeff A. Menges", read.artist);
+	}
+
+	@Test
+	public void skippedObjectsStillDefineStrings() throws IOException {
+		Card.Face face = new Card.Face();
+		face.name = "Fire";
+		face.typeLine = "Instant";
+		face.artist = "Franz Vohwinkel";
+
+		Card card = new Card();
+		card.name = "Fire // Ice";
+		card.cardFaces = Collections.singletonList(face);
+		card.typeLine = "Instant";
+		card.artist = "Franz Vohwinkel";
+
+		Card read = unpack(pack(card), readerWithout("card", "cardFaces"));
+		assertNull(read.cardFaces);
+		assertEquals("Fire // Ice", read.name);
+		assertEquals("Instant", read.typeLine);
+		assertEquals("Franz Vohwinkel", read.artist);
+	}
+}
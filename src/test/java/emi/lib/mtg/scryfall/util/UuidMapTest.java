@@ -0,0 +1,38 @@
+package emi.lib.mtg.scryfall.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class UuidMapTest {
+	@Test
+	public void matchesHashMap() {
+		Random random = new Random(1);
+		Map<UUID, Integer> expected = new HashMap<>();
+		UuidMap<Integer> map = new UuidMap<>();
+
+		for (int i = 0; i < 100000; ++i) {
+			UUID id = new UUID(random.nextInt(64), random.nextInt(64));
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(id), map.remove(id));
+			} else {
+				assertEquals(expected.put(id, i), map.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), i));
+			}
+
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (long msb = 0; msb < 64; ++msb) {
+			for (long lsb = 0; lsb < 64; ++lsb) {
+				assertEquals(expected.get(new UUID(msb, lsb)), map.get(msb, lsb));
+			}
+		}
+
+		assertEquals(expected, new HashMap<>(map));
+	}
+}